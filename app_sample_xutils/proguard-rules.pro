@@ -28,6 +28,9 @@
     public protected *;
 }
 -keepclassmembers @org.xutils.db.annotation.* class * {*;}
+-keep class * implements org.xutils.db.table.EntityAdapter {
+    public <init>();
+}
 -keepclassmembers @org.xutils.http.annotation.* class * {*;}
 -keepclassmembers class * {
     @org.xutils.view.annotation.Event <methods>;
@@ -0,0 +1,135 @@
+package org.xutils.cache;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.xutils.DbManager;
+import org.xutils.common.util.IOUtil;
+import org.xutils.config.DbConfigs;
+import org.xutils.x;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 对比sqlite和日志文件两种缓存索引存储的put/get/trim吞吐量.
+ */
+public class DiskCacheStoreBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "DiskCacheStoreBenchmark";
+    private static final int COUNT = 2000;
+    private static final int TEXT_LENGTH = 512;
+    private static final String KEY_PREFIX = "store_benchmark_";
+
+    // 在当前线程重写日志, 重新打开前日志文件已写完
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        x.Ext.init((android.app.Application) getContext().getApplicationContext());
+    }
+
+    public void testDbStore() throws Throwable {
+        DbManager db = x.getDb(DbConfigs.HTTP.getConfig());
+        DbDiskCacheStore store = new DbDiskCacheStore(db);
+        run("db", store, db);
+    }
+
+    public void testJournalStore() throws Throwable {
+        File journalFile = new File(getContext().getCacheDir(), "store_benchmark.journal");
+        IOUtil.deleteFileOrDir(journalFile);
+        JournalDiskCacheStore store = new JournalDiskCacheStore(journalFile, DIRECT_EXECUTOR);
+        run("journal", store, null);
+
+        // 重新打开, 检查加载结果
+        JournalDiskCacheStore reopened = new JournalDiskCacheStore(journalFile, DIRECT_EXECUTOR);
+        long startTime = SystemClock.uptimeMillis();
+        assertEquals(COUNT / 2, reopened.count());
+        Log.i(TAG, "journal reopen: " + (SystemClock.uptimeMillis() - startTime) + "ms");
+        IOUtil.deleteFileOrDir(journalFile);
+    }
+
+    /**
+     * @param db DbDiskCacheStore使用的数据库, 用于等待异步写入完成.
+     */
+    private void run(String name, DiskCacheStore store, DbManager db) throws Throwable {
+        StringBuilder text = new StringBuilder(TEXT_LENGTH);
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+
+        List<String> keyList = new ArrayList<String>(COUNT);
+        long startTime = SystemClock.uptimeMillis();
+        for (int i = 0; i < COUNT; i++) {
+            DiskCacheEntity entity = new DiskCacheEntity();
+            entity.setKey(KEY_PREFIX + i);
+            entity.setTextContent(text.toString());
+            entity.setLastAccess(System.currentTimeMillis());
+            store.replace(entity);
+            keyList.add(entity.getKey());
+        }
+        long putCost = SystemClock.uptimeMillis() - startTime;
+
+        startTime = SystemClock.uptimeMillis();
+        for (String key : keyList) {
+            assertNotNull(store.find(key));
+        }
+        long getCost = SystemClock.uptimeMillis() - startTime;
+
+        startTime = SystemClock.uptimeMillis();
+        List<DiskCacheEntity> statsList = new ArrayList<DiskCacheEntity>(COUNT);
+        long lastAccess = System.currentTimeMillis();
+        for (String key : keyList) {
+            DiskCacheEntity stats = new DiskCacheEntity();
+            stats.setKey(key);
+            stats.setHits(1);
+            stats.setLastAccess(lastAccess++); // 按key的顺序递增
+            statsList.add(stats);
+        }
+        store.updateStats(statsList);
+        if (db != null) {
+            db.getWriteBehindQueue().flush();
+        }
+        long statsCost = SystemClock.uptimeMillis() - startTime;
+
+        // 按lastAccess顺序删除一半
+        startTime = SystemClock.uptimeMillis();
+        final List<String> rmKeyList = new ArrayList<String>(COUNT / 2);
+        store.forEachOldest(false, new DbManager.ForEachCallback<DiskCacheEntity>() {
+            @Override
+            public boolean onEach(DiskCacheEntity entity) {
+                if (entity.getKey().startsWith(KEY_PREFIX)) {
+                    rmKeyList.add(entity.getKey());
+                }
+                return rmKeyList.size() < COUNT / 2;
+            }
+        });
+        store.delete(rmKeyList);
+        long trimCost = SystemClock.uptimeMillis() - startTime;
+
+        Log.i(TAG, name + " put: " + opsPerSecond(COUNT, putCost) + " ops/s");
+        Log.i(TAG, name + " get: " + opsPerSecond(COUNT, getCost) + " ops/s");
+        Log.i(TAG, name + " stats: " + statsCost + "ms");
+        Log.i(TAG, name + " trim " + rmKeyList.size() + ": " + trimCost + "ms");
+
+        assertEquals(COUNT / 2, rmKeyList.size());
+        List<String> restKeyList = keyList.subList(COUNT / 2, COUNT);
+        for (String key : keyList) {
+            assertEquals(restKeyList.contains(key), store.find(key) != null);
+        }
+        store.delete(new ArrayList<String>(restKeyList));
+    }
+
+    private static long opsPerSecond(int count, long cost) {
+        return cost > 0 ? count * 1000L / cost : count * 1000L;
+    }
+}
@@ -0,0 +1,123 @@
+package org.xutils.cache;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LruCache与StripedLruCache的多线程吞吐量对比.
+ * 1~16个线程, 每个线程 90% get / 10% put, 运行固定时长后统计操作次数.
+ */
+public class LruCacheConcurrencyBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "LruCacheConcurrency";
+    private static final long WARM_UP = 500;
+    private static final long DURATION = 2000;
+    private static final int MAX_SIZE = 1000;
+    private static final int KEY_COUNT = 2000;
+    private static final int GET_PERCENT = 90;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+    /**
+     * 屏蔽两种实现的差异
+     */
+    private interface CacheOps {
+        Object get(Integer key);
+
+        void put(Integer key, Integer value);
+    }
+
+    public void testThroughput() throws Exception {
+        for (int threadCount : THREAD_COUNTS) {
+            final LruCache<Integer, Integer> lruCache = new LruCache<Integer, Integer>(MAX_SIZE);
+            long lruOps = run(threadCount, new CacheOps() {
+                @Override
+                public Object get(Integer key) {
+                    return lruCache.get(key);
+                }
+
+                @Override
+                public void put(Integer key, Integer value) {
+                    lruCache.put(key, value);
+                }
+            });
+
+            final StripedLruCache<Integer, Integer> stripedCache = new StripedLruCache<Integer, Integer>(MAX_SIZE);
+            long stripedOps = run(threadCount, new CacheOps() {
+                @Override
+                public Object get(Integer key) {
+                    return stripedCache.get(key);
+                }
+
+                @Override
+                public void put(Integer key, Integer value) {
+                    stripedCache.put(key, value);
+                }
+            });
+
+            Log.i(TAG, threadCount + " threads: LruCache " + lruOps + " ops/s, StripedLruCache "
+                    + stripedOps + " ops/s, hit rate "
+                    + hitPercent(lruCache.hitCount(), lruCache.missCount()) + "% / "
+                    + hitPercent(stripedCache.hitCount(), stripedCache.missCount()) + "%");
+
+            assertTrue(lruOps > 0 && stripedOps > 0);
+            assertTrue(stripedCache.size() <= MAX_SIZE);
+        }
+    }
+
+    private static long hitPercent(int hitCount, int missCount) {
+        long accesses = (long) hitCount + missCount;
+        return accesses != 0 ? (100L * hitCount / accesses) : 0;
+    }
+
+    /**
+     * @return 每秒操作次数
+     */
+    private static long run(int threadCount, final CacheOps cache) throws Exception {
+        for (int i = 0; i < KEY_COUNT; i++) {
+            cache.put(i, i);
+        }
+
+        final AtomicLong ops = new AtomicLong();
+        final long startTime = System.currentTimeMillis() + WARM_UP;
+        final long endTime = startTime + DURATION;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            final int seed = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        long count = 0;
+                        long now;
+                        while ((now = System.currentTimeMillis()) < endTime) {
+                            for (int j = 0; j < 100; j++) {
+                                // 偏斜分布, 排在前面的key更热
+                                float r = random.nextFloat();
+                                Integer key = (int) (KEY_COUNT * r * r);
+                                if (random.nextInt(100) < GET_PERCENT) {
+                                    cache.get(key);
+                                } else {
+                                    cache.put(key, key);
+                                }
+                            }
+                            if (now >= startTime) {
+                                count += 100;
+                            }
+                        }
+                        ops.addAndGet(count);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        latch.await();
+        return ops.get() * 1000 / DURATION;
+    }
+}
@@ -0,0 +1,72 @@
+package org.xutils.cache;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.Random;
+
+/**
+ * 用模拟的图片列表访问序列对比LRU和TinyLFU的命中率:
+ * 少量反复出现的小图(头像, 图标) + 大量只出现一次的大图(快速滑动的信息流).
+ */
+public class LruCacheHitRateBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "LruCacheHitRate";
+
+    private static final int MAX_SIZE = 1024 * 1024 * 4;
+    private static final int TRACE_LENGTH = 200000;
+
+    private static final int HOT_COUNT = 300;
+    private static final int HOT_SIZE = 1024 * 8;
+    private static final int FEED_SIZE = 1024 * 200;
+    private static final float HOT_RATIO = 0.6f;
+    private static final float FEED_REVISIT_RATIO = 0.1f; // 回滚看刚才的图片
+    private static final int FEED_REVISIT_RANGE = 5;
+
+    public void testHitRate() throws Exception {
+        float lruHitRate = replay(LruCache.Policy.LRU);
+        float tinyLfuHitRate = replay(LruCache.Policy.TINY_LFU);
+
+        Log.i(TAG, "LRU hit rate: " + lruHitRate);
+        Log.i(TAG, "TinyLFU hit rate: " + tinyLfuHitRate);
+
+        assertTrue(tinyLfuHitRate >= lruHitRate);
+    }
+
+    private static float replay(LruCache.Policy policy) {
+        LruCache<String, Integer> cache = new LruCache<String, Integer>(MAX_SIZE, policy) {
+            @Override
+            protected int sizeOf(String key, Integer value) {
+                return value;
+            }
+        };
+
+        Random random = new Random(42); // 两种策略使用相同的访问序列
+        int feedIndex = 0;
+        int hits = 0;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            String key;
+            int size;
+            if (random.nextFloat() < HOT_RATIO) {
+                // 偏斜分布, 排在前面的更热
+                float r = random.nextFloat();
+                key = "hot_" + (int) (HOT_COUNT * r * r);
+                size = HOT_SIZE;
+            } else {
+                if (feedIndex > FEED_REVISIT_RANGE && random.nextFloat() < FEED_REVISIT_RATIO) {
+                    key = "feed_" + (feedIndex - 1 - random.nextInt(FEED_REVISIT_RANGE));
+                } else {
+                    key = "feed_" + feedIndex++;
+                }
+                size = FEED_SIZE;
+            }
+
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, size);
+            }
+        }
+        return (float) hits / TRACE_LENGTH;
+    }
+}
@@ -0,0 +1,79 @@
+package org.xutils.cache;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.xutils.common.util.FileUtil;
+import org.xutils.common.util.IOUtil;
+import org.xutils.x;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+/**
+ * 写入20k个缓存文件, 统计按缓存文件总大小清理的耗时,
+ * 并与遍历一次缓存目录(原来每次清理循环的开销)对比.
+ */
+public class LruDiskCacheTrimBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "DiskCacheBenchmark";
+    private static final String DIR_NAME = "xUtils_trim_benchmark";
+    private static final int FILE_COUNT = 20000;
+    private static final int FILE_SIZE = 2048;
+    private static final long MAX_SIZE = 1024L * 1024L * 8L;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        x.Ext.init((android.app.Application) getContext().getApplicationContext());
+    }
+
+    public void testTrim20kFiles() throws Exception {
+        LruDiskCache cache = LruDiskCache.getDiskCache(DIR_NAME).setMaxSize(MAX_SIZE);
+        Thread.sleep(500); // 等待启动时的目录统计完成
+        cache.clearCacheFiles();
+
+        byte[] content = new byte[FILE_SIZE];
+        long startTime = SystemClock.uptimeMillis();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            DiskCacheEntity entity = new DiskCacheEntity();
+            entity.setKey("trim_benchmark_" + i);
+            entity.setLastAccess(System.currentTimeMillis());
+            DiskCacheFile cacheFile = cache.createDiskCacheFile(entity);
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(cacheFile);
+                out.write(content);
+            } finally {
+                IOUtil.closeQuietly(out);
+            }
+            IOUtil.closeQuietly(cacheFile.commit());
+        }
+        long fillCost = SystemClock.uptimeMillis() - startTime;
+
+        // 等待后台清理完成
+        startTime = SystemClock.uptimeMillis();
+        while (cache.getCacheFilesSize() > MAX_SIZE) {
+            Thread.sleep(10);
+            assertTrue("trim timeout", SystemClock.uptimeMillis() - startTime < 1000 * 60);
+        }
+        long trimCost = SystemClock.uptimeMillis() - startTime;
+        Thread.sleep(1000);
+
+        startTime = SystemClock.uptimeMillis();
+        File cacheDir = FileUtil.getCacheDir(DIR_NAME);
+        long realSize = FileUtil.getFileOrDirSize(cacheDir);
+        long walkCost = SystemClock.uptimeMillis() - startTime;
+
+        Log.i(TAG, "fill " + FILE_COUNT + " files: " + fillCost + "ms");
+        Log.i(TAG, "wait trim after fill: " + trimCost + "ms");
+        Log.i(TAG, "walk cache dir once: " + walkCost + "ms");
+        Log.i(TAG, "size: " + cache.getCacheFilesSize() + ", real size: " + realSize);
+
+        assertTrue(realSize <= MAX_SIZE);
+        assertEquals(realSize, cache.getCacheFilesSize());
+
+        cache.clearCacheFiles();
+    }
+}
@@ -0,0 +1,124 @@
+package org.xutils.db;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.xutils.DbManager;
+import org.xutils.db.annotation.Column;
+import org.xutils.db.annotation.Table;
+import org.xutils.x;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写混合吞吐量对比: WAL 开启/关闭.
+ * 1个线程循环批量写入, 3个线程循环查询, 各运行固定时长后统计次数.
+ */
+public class DbConcurrencyBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "DbBenchmark";
+    private static final long DURATION = 5000;
+    private static final int READER_COUNT = 3;
+    private static final int WRITE_BATCH = 100;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        x.Ext.init((android.app.Application) getContext().getApplicationContext());
+    }
+
+    public void testMixedReadWrite() throws Exception {
+        long[] withoutWal = run(false);
+        long[] withWal = run(true);
+        Log.i(TAG, "WAL off: writes=" + withoutWal[0] + " reads=" + withoutWal[1]);
+        Log.i(TAG, "WAL on : writes=" + withWal[0] + " reads=" + withWal[1]);
+        assertTrue(withoutWal[0] > 0 && withoutWal[1] > 0);
+        assertTrue(withWal[0] > 0 && withWal[1] > 0);
+    }
+
+    private long[] run(boolean wal) throws Exception {
+        File dbDir = getContext().getCacheDir();
+        String dbName = "benchmark_" + (wal ? "wal" : "default") + ".db";
+        for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+            new File(dbDir, dbName + suffix).delete();
+        }
+
+        final DbManager db = x.getDb(new DbManager.DaoConfig()
+                .setDbDir(dbDir)
+                .setDbName(dbName)
+                .setWriteAheadLoggingEnabled(wal));
+        final List<BenchEntity> seed = createEntities(WRITE_BATCH);
+        db.save(seed);
+
+        final AtomicLong writes = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+        final long endTime = System.currentTimeMillis() + DURATION;
+        final CountDownLatch latch = new CountDownLatch(READER_COUNT + 1);
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (System.currentTimeMillis() < endTime) {
+                        db.save(createEntities(WRITE_BATCH));
+                        writes.addAndGet(WRITE_BATCH);
+                    }
+                } catch (Throwable ex) {
+                    Log.e(TAG, ex.getMessage(), ex);
+                } finally {
+                    latch.countDown();
+                }
+            }
+        }).start();
+
+        for (int i = 0; i < READER_COUNT; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (System.currentTimeMillis() < endTime) {
+                            db.selector(BenchEntity.class).where("value", "<", 50).limit(20).findAll();
+                            reads.incrementAndGet();
+                        }
+                    } catch (Throwable ex) {
+                        Log.e(TAG, ex.getMessage(), ex);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        latch.await();
+        db.close();
+        return new long[]{writes.get(), reads.get()};
+    }
+
+    private static List<BenchEntity> createEntities(int count) {
+        List<BenchEntity> result = new ArrayList<BenchEntity>(count);
+        for (int i = 0; i < count; i++) {
+            BenchEntity entity = new BenchEntity();
+            entity.name = "name" + i;
+            entity.value = i;
+            result.add(entity);
+        }
+        return result;
+    }
+
+    @Table(name = "bench_entity")
+    public static class BenchEntity {
+        @Column(name = "id", isId = true)
+        public long id;
+        @Column(name = "name")
+        public String name;
+        @Column(name = "value")
+        public int value;
+
+        public BenchEntity() {
+        }
+    }
+}
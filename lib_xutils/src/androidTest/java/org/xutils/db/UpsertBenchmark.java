@@ -0,0 +1,93 @@
+package org.xutils.db;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import org.xutils.DbManager;
+import org.xutils.db.annotation.Column;
+import org.xutils.db.annotation.Index;
+import org.xutils.db.annotation.Table;
+import org.xutils.x;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 10k行List的 saveOrUpdate 与 upsert 耗时对比.
+ * 先写入全部行, 再更新一半已存在的行并追加一半新行.
+ */
+public class UpsertBenchmark extends AndroidTestCase {
+
+    private static final String TAG = "DbBenchmark";
+    private static final int ROW_COUNT = 10000;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        x.Ext.init((android.app.Application) getContext().getApplicationContext());
+    }
+
+    public void testSaveOrUpdateVsUpsert() throws Exception {
+        long saveOrUpdateCost = run(false);
+        long upsertCost = run(true);
+        Log.i(TAG, "saveOrUpdate: " + ROW_COUNT + " rows, " + saveOrUpdateCost + "ms");
+        Log.i(TAG, "upsert      : " + ROW_COUNT + " rows, " + upsertCost + "ms");
+    }
+
+    private long run(boolean upsert) throws Exception {
+        File dbDir = getContext().getCacheDir();
+        String dbName = "benchmark_" + (upsert ? "upsert" : "save_or_update") + ".db";
+        for (String suffix : new String[]{"", "-journal", "-wal", "-shm"}) {
+            new File(dbDir, dbName + suffix).delete();
+        }
+
+        DbManager db = x.getDb(new DbManager.DaoConfig()
+                .setDbDir(dbDir)
+                .setDbName(dbName));
+        db.save(createEntities(0, ROW_COUNT, 0));
+
+        List<BenchEntity> entities = createEntities(ROW_COUNT / 2, ROW_COUNT, 1);
+        long startTime = SystemClock.uptimeMillis();
+        if (upsert) {
+            db.upsert(entities);
+        } else {
+            db.saveOrUpdate(entities);
+        }
+        long cost = SystemClock.uptimeMillis() - startTime;
+
+        assertEquals(ROW_COUNT + ROW_COUNT / 2, db.selector(BenchEntity.class).count());
+        BenchEntity updated = db.findById(BenchEntity.class, "key" + (ROW_COUNT - 1));
+        assertEquals(1, updated.version);
+
+        db.close();
+        return cost;
+    }
+
+    private static List<BenchEntity> createEntities(int from, int count, int version) {
+        List<BenchEntity> result = new ArrayList<BenchEntity>(count);
+        for (int i = from; i < from + count; i++) {
+            BenchEntity entity = new BenchEntity();
+            entity.key = "key" + i;
+            entity.name = "name" + i;
+            entity.version = version;
+            result.add(entity);
+        }
+        return result;
+    }
+
+    @Table(name = "bench_upsert")
+    public static class BenchEntity {
+        @Column(name = "key", isId = true)
+        public String key;
+        @Index
+        @Column(name = "name")
+        public String name;
+        @Column(name = "version")
+        public int version;
+
+        public BenchEntity() {
+        }
+    }
+}
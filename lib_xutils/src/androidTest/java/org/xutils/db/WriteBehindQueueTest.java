@@ -0,0 +1,121 @@
+package org.xutils.db;
+
+import android.test.AndroidTestCase;
+
+import org.xutils.DbManager;
+import org.xutils.common.Callback;
+import org.xutils.ex.DbException;
+import org.xutils.x;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * close()与submit()/flush()并发时, 已提交的写操作都有回调, flush()不会一直等待.
+ */
+public class WriteBehindQueueTest extends AndroidTestCase {
+
+    private static final int ROUNDS = 50;
+    private static final long TIMEOUT = 5000;
+
+    private DbManagerImpl db;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        x.Ext.init((android.app.Application) getContext().getApplicationContext());
+        File dbDir = getContext().getCacheDir();
+        String dbName = "write_behind_test.db";
+        new File(dbDir, dbName).delete();
+        db = (DbManagerImpl) x.getDb(new DbManager.DaoConfig()
+                .setDbDir(dbDir)
+                .setDbName(dbName));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.close();
+        super.tearDown();
+    }
+
+    public void testCloseRacesSubmitAndFlush() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            final WriteBehindQueue queue = new WriteBehindQueue(db, 10, 5);
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger finished = new AtomicInteger();
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final CountDownLatch doneLatch = new CountDownLatch(2);
+            final Callback.CommonCallback<Void> callback = new Callback.CommonCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                }
+
+                @Override
+                public void onError(Throwable ex, boolean isOnCallback) {
+                }
+
+                @Override
+                public void onCancelled(CancelledException cex) {
+                }
+
+                @Override
+                public void onFinished() {
+                    finished.incrementAndGet();
+                }
+            };
+
+            Thread submitter = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        while (true) {
+                            queue.submit(new DbManager.WriteOperation() {
+                                @Override
+                                public void execute(DbManager db) throws DbException {
+                                }
+                            }, callback);
+                            accepted.incrementAndGet();
+                        }
+                    } catch (IllegalStateException ignored) {
+                        // closed
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            Thread flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        while (true) {
+                            queue.flush();
+                        }
+                    } catch (IllegalStateException ignored) {
+                        // closed
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            });
+            submitter.start();
+            flusher.start();
+
+            startLatch.countDown();
+            Thread.sleep(round % 5);
+            queue.close();
+
+            assertTrue("submit/flush blocked after close", doneLatch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (finished.get() < accepted.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(accepted.get(), finished.get());
+        }
+    }
+}
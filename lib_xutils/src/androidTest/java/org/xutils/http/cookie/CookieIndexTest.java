@@ -0,0 +1,131 @@
+package org.xutils.http.cookie;
+
+import android.test.AndroidTestCase;
+import android.text.TextUtils;
+
+import java.net.HttpCookie;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * CookieIndex.find与DbCookieStore原来的数据库查询结果相同:
+ * (domain为host或host的上一级域名) 并且 (path为请求path或它的上级目录, "/"或null), 或者uri相同.
+ */
+public class CookieIndexTest extends AndroidTestCase {
+
+    private static final String HOST = "www.example.com";
+    private static final String DOMAIN = ".example.com";
+
+    private static final String[] PATHS = {
+            null, "/", "/app", "/app/", "/app/index.html", "/app/api", "/app/api/", "/app/api/v1",
+            "/application", "/other", "/other/x", "/private/page"};
+
+    private final List<CookieEntity> entityList = new ArrayList<CookieEntity>();
+    private CookieIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        index = new CookieIndex();
+        put("http://www.example.com/", "root", HOST, "/");
+        put("http://www.example.com/", "none", HOST, null);
+        put("http://www.example.com/app", "app", HOST, "/app");
+        put("http://www.example.com/app/", "appDir", HOST, "/app/"); // 保存为"/app"
+        put("http://www.example.com/app/api/", "appApi", DOMAIN, "/app/api");
+        put("http://www.example.com/other/x", "other", HOST, "/other/x");
+        put("http://www.example.com/private/page", "private", HOST, "/private/page");
+        put("http://www.example.org/app", "foreign", "www.example.org", "/app");
+    }
+
+    public void testTrailingSlashIsNormalized() {
+        assertEquals("/app", createCookie("http://www.example.com/app/", "a", HOST, "/app/").path);
+        assertEquals("/", createCookie("http://www.example.com/", "a", HOST, "/").path);
+    }
+
+    public void testPathRules() {
+        assertEquals(names("root", "none", "app", "appDir"), find("/app/index.html", null));
+        assertEquals(names("root", "none", "app", "appDir"), find("/app/", null));
+        assertEquals(names("root", "none", "app", "appDir", "appApi"), find("/app/api/v1", null));
+        assertEquals(names("root", "none"), find("/application", null));
+        assertEquals(names("root", "none"), find("/", null));
+        assertEquals(names("root", "none", "app", "appDir", "appApi", "other", "private"), find(null, null));
+    }
+
+    public void testSameUri() {
+        assertEquals(names("root", "none", "private"), find("/other", "http://www.example.com/private/page"));
+    }
+
+    public void testMatchesOldQuery() {
+        String[] uris = {null, "http://www.example.com/private/page", "http://www.example.org/app"};
+        for (String path : PATHS) {
+            for (String uri : uris) {
+                assertEquals(path + " " + uri, oldQuery(HOST, DOMAIN, path, uri), find(path, uri));
+            }
+        }
+    }
+
+    public void testRemove() {
+        index.remove(createCookie("http://www.example.com/app/", "appDir", HOST, "/app/"));
+        assertEquals(names("root", "none", "app"), find("/app/", null));
+    }
+
+    private void put(String uri, String name, String domain, String path) {
+        CookieEntity entity = createCookie(uri, name, domain, path);
+        entityList.add(entity);
+        index.put(entity);
+    }
+
+    private Set<String> find(String path, String uri) {
+        Set<String> result = new HashSet<String>();
+        for (CookieEntity cookie : index.find(HOST, DOMAIN, path, uri)) {
+            result.add(cookie.name);
+        }
+        return result;
+    }
+
+    /**
+     * DbCookieStore原来的查询条件
+     */
+    private Set<String> oldQuery(String host, String domain, String path, String uri) {
+        Set<String> pathSet = null;
+        if (!TextUtils.isEmpty(path)) {
+            pathSet = new HashSet<String>();
+            pathSet.add(path);
+            pathSet.add("/");
+            int lastSplit = path.lastIndexOf("/");
+            while (lastSplit > 0) {
+                path = path.substring(0, lastSplit);
+                pathSet.add(path);
+                lastSplit = path.lastIndexOf("/");
+            }
+        }
+
+        Set<String> result = new HashSet<String>();
+        for (CookieEntity entity : entityList) {
+            boolean domainMatched = host.equals(entity.domain) || domain.equals(entity.domain);
+            boolean pathMatched = pathSet == null || entity.path == null || pathSet.contains(entity.path);
+            if ((domainMatched && pathMatched) || (uri != null && uri.equals(entity.uri))) {
+                result.add(entity.name);
+            }
+        }
+        return result;
+    }
+
+    private static Set<String> names(String... names) {
+        Set<String> result = new HashSet<String>();
+        for (String name : names) {
+            result.add(name);
+        }
+        return result;
+    }
+
+    private static CookieEntity createCookie(String uri, String name, String domain, String path) {
+        HttpCookie cookie = new HttpCookie(name, "1");
+        cookie.setDomain(domain);
+        cookie.setPath(path);
+        return new CookieEntity(URI.create(uri), cookie);
+    }
+}
@@ -6,6 +6,7 @@ import android.text.TextUtils;
 
 import org.xutils.common.util.KeyValue;
 import org.xutils.db.Selector;
+import org.xutils.db.WriteBehindQueue;
 import org.xutils.db.sqlite.SqlInfo;
 import org.xutils.db.sqlite.WhereBuilder;
 import org.xutils.db.table.DbModel;
@@ -44,6 +45,17 @@ public interface DbManager extends Closeable {
      */
     void saveOrUpdate(Object entity) throws DbException;
 
+    /**
+     * 保存或更新实体类或实体类的List到数据库,
+     * 使用 INSERT ... ON CONFLICT(id) DO UPDATE, 已存在的行原地更新, 不会像REPLACE一样先删除再插入.
+     * 同一个表只编译一次statement, 整个List复用.
+     * sqlite版本低于3.24时退化为 saveOrUpdate.
+     *
+     * @param entity
+     * @throws DbException
+     */
+    void upsert(Object entity) throws DbException;
+
     /**
      * 保存实体类或实体类的List到数据库
      *
@@ -87,6 +99,14 @@ public interface DbManager extends Closeable {
 
     List<DbModel> findDbModelAll(SqlInfo sqlInfo) throws DbException;
 
+    /**
+     * 逐行回调查询结果, 不会一次性把所有结果加载到内存.
+     *
+     * @param callback 返回false时停止遍历
+     * @throws DbException
+     */
+    void forEachDbModel(SqlInfo sqlInfo, ForEachCallback<DbModel> callback) throws DbException;
+
     ///////////// table
 
     /**
@@ -117,6 +137,14 @@ public interface DbManager extends Closeable {
      */
     void addColumn(Class<?> entityType, String column) throws DbException;
 
+    /**
+     * 异步写入队列,
+     * 多个线程提交的写操作会被合并到一个事务中提交, 减少事务提交(fsync)的次数.
+     *
+     * @return
+     */
+    WriteBehindQueue getWriteBehindQueue();
+
     ///////////// db
 
     /**
@@ -159,14 +187,47 @@ public interface DbManager extends Closeable {
         void onTableCreated(DbManager db, TableEntity<?> table);
     }
 
+    public interface ForEachCallback<T> {
+        /**
+         * @return 返回false时停止遍历
+         */
+        boolean onEach(T item);
+    }
+
+    /**
+     * 批量写入(save, replace, saveOrUpdate 一个List)完成后的统计回调.
+     */
+    public interface BatchWriteListener {
+        /**
+         * @param rowCount   写入的行数
+         * @param costMillis 耗时(毫秒), rows/sec = rowCount * 1000 / costMillis
+         */
+        void onBatchWritten(DbManager db, TableEntity<?> table, int rowCount, long costMillis);
+    }
+
+    /**
+     * 通过 WriteBehindQueue 提交的写操作
+     */
+    public interface WriteOperation {
+        void execute(DbManager db) throws DbException;
+    }
+
     public static class DaoConfig {
         private File dbDir;
         private String dbName = "xUtils.db"; // default db name
         private int dbVersion = 1;
         private boolean allowTransaction = true;
+        private int batchSize = 0; // 批量写入时每个事务提交的行数, <=0 时整个List在一个事务中提交
+        private boolean writeAheadLoggingEnabled = false;
+        private long pageSize = 0; // <=0 时使用sqlite默认值
+        private int cacheSize = 0; // 0 时使用sqlite默认值
+        private int sqlCacheSize = 0; // <=0 时使用系统默认值
+        private int writeBehindFlushSize = 100; // 异步写入队列每个事务最多合并的写操作数
+        private long writeBehindFlushDelay = 200; // 异步写入队列中的写操作最长等待时间(毫秒)
         private DbUpgradeListener dbUpgradeListener;
         private TableCreateListener tableCreateListener;
         private DbOpenListener dbOpenListener;
+        private BatchWriteListener batchWriteListener;
 
         public DaoConfig() {
         }
@@ -193,6 +254,72 @@ public interface DbManager extends Closeable {
             return this;
         }
 
+        /**
+         * 批量写入时每提交一次事务写入的行数.
+         *
+         * @param batchSize <=0 时整个List在一个事务中提交
+         */
+        public DaoConfig setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * 开启WAL(write-ahead logging)模式,
+         * 开启后写事务不再阻塞其他线程的查询, 系统会为查询分配额外的只读连接.
+         */
+        public DaoConfig setWriteAheadLoggingEnabled(boolean writeAheadLoggingEnabled) {
+            this.writeAheadLoggingEnabled = writeAheadLoggingEnabled;
+            return this;
+        }
+
+        /**
+         * 数据库页大小(字节, 2的幂), 只对新创建的数据库生效.
+         */
+        public DaoConfig setPageSize(long pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * PRAGMA cache_size: 正数为页数, 负数为KiB.
+         */
+        public DaoConfig setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * 每个数据库连接缓存的已编译sql语句数(LRU, 最大100),
+         * 相同sql的查询(如 PreparedSelector)可以跳过sql解析.
+         */
+        public DaoConfig setSqlCacheSize(int sqlCacheSize) {
+            this.sqlCacheSize = sqlCacheSize;
+            return this;
+        }
+
+        /**
+         * 异步写入队列每个事务最多合并的写操作数.
+         */
+        public DaoConfig setWriteBehindFlushSize(int writeBehindFlushSize) {
+            this.writeBehindFlushSize = writeBehindFlushSize;
+            return this;
+        }
+
+        /**
+         * 异步写入队列中的写操作最长等待时间(毫秒),
+         * 队列中的第一个写操作等待超过这个时间后, 不论是否凑满 flushSize 都会提交.
+         */
+        public DaoConfig setWriteBehindFlushDelay(long writeBehindFlushDelay) {
+            this.writeBehindFlushDelay = writeBehindFlushDelay;
+            return this;
+        }
+
+        public DaoConfig setBatchWriteListener(BatchWriteListener batchWriteListener) {
+            this.batchWriteListener = batchWriteListener;
+            return this;
+        }
+
         public DaoConfig setDbOpenListener(DbOpenListener dbOpenListener) {
             this.dbOpenListener = dbOpenListener;
             return this;
@@ -224,6 +351,38 @@ public interface DbManager extends Closeable {
             return allowTransaction;
         }
 
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public boolean isWriteAheadLoggingEnabled() {
+            return writeAheadLoggingEnabled;
+        }
+
+        public long getPageSize() {
+            return pageSize;
+        }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public int getSqlCacheSize() {
+            return sqlCacheSize;
+        }
+
+        public int getWriteBehindFlushSize() {
+            return writeBehindFlushSize;
+        }
+
+        public long getWriteBehindFlushDelay() {
+            return writeBehindFlushDelay;
+        }
+
+        public BatchWriteListener getBatchWriteListener() {
+            return batchWriteListener;
+        }
+
         public DbOpenListener getDbOpenListener() {
             return dbOpenListener;
         }
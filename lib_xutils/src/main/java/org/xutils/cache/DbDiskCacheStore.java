@@ -0,0 +1,106 @@
+package org.xutils.cache;
+
+import org.xutils.DbManager;
+import org.xutils.common.util.KeyValue;
+import org.xutils.db.Selector;
+import org.xutils.db.sqlite.WhereBuilder;
+import org.xutils.db.table.DbModel;
+import org.xutils.ex.DbException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 使用sqlite(DbConfigs.HTTP)保存的缓存索引
+ */
+/*package*/ final class DbDiskCacheStore implements DiskCacheStore {
+
+    private final DbManager cacheDb;
+
+    public DbDiskCacheStore(DbManager cacheDb) {
+        this.cacheDb = cacheDb;
+    }
+
+    @Override
+    public void forEach(DbManager.ForEachCallback<DiskCacheEntity> callback) throws Throwable {
+        cacheDb.selector(DiskCacheEntity.class).forEach(callback);
+    }
+
+    @Override
+    public DiskCacheEntity find(String key) throws Throwable {
+        return cacheDb.selector(DiskCacheEntity.class).where("key", "=", key).findFirst();
+    }
+
+    @Override
+    public long count() throws Throwable {
+        return cacheDb.selector(DiskCacheEntity.class).count();
+    }
+
+    @Override
+    public boolean containsPath(String path) throws Throwable {
+        return cacheDb.selector(DiskCacheEntity.class).where("path", "=", path).count() > 0;
+    }
+
+    @Override
+    public void replace(DiskCacheEntity entity) throws Throwable {
+        cacheDb.replace(entity);
+    }
+
+    @Override
+    public void delete(List<String> keys) throws Throwable {
+        if (keys == null || keys.isEmpty()) return;
+        cacheDb.delete(DiskCacheEntity.class, WhereBuilder.b("key", "in", keys));
+    }
+
+    @Override
+    public void forEachOldest(boolean fileOnly,
+                              final DbManager.ForEachCallback<DiskCacheEntity> callback) throws Throwable {
+        Selector<DiskCacheEntity> selector = cacheDb.selector(DiskCacheEntity.class);
+        if (fileOnly) {
+            selector.where("path", "!=", null);
+        }
+        selector.orderBy("lastAccess").orderBy("hits")
+                .select("key", "path")
+                .forEach(new DbManager.ForEachCallback<DbModel>() {
+                    @Override
+                    public boolean onEach(DbModel item) {
+                        DiskCacheEntity entity = new DiskCacheEntity();
+                        entity.setKey(item.getString("key"));
+                        entity.setPath(item.getString("path"));
+                        return callback.onEach(entity);
+                    }
+                });
+    }
+
+    @Override
+    public List<DiskCacheEntity> deleteExpiry(long time) throws Throwable {
+        WhereBuilder whereBuilder = WhereBuilder.b("expires", "<", time);
+        List<DiskCacheEntity> rmList = cacheDb.selector(DiskCacheEntity.class).where(whereBuilder).findAll();
+        cacheDb.delete(DiskCacheEntity.class, whereBuilder);
+        return rmList;
+    }
+
+    /**
+     * 通过WriteBehindQueue在一个事务中提交
+     */
+    @Override
+    public void updateStats(List<DiskCacheEntity> entries) throws Throwable {
+        final List<String> keyList = new ArrayList<String>(entries.size());
+        final List<KeyValue[]> statsList = new ArrayList<KeyValue[]>(entries.size());
+        for (DiskCacheEntity entry : entries) {
+            keyList.add(entry.getKey());
+            statsList.add(new KeyValue[]{
+                    new KeyValue("hits", entry.getHits()),
+                    new KeyValue("lastAccess", entry.getLastAccess())});
+        }
+        cacheDb.getWriteBehindQueue().submit(new DbManager.WriteOperation() {
+            @Override
+            public void execute(DbManager db) throws DbException {
+                for (int i = 0; i < keyList.size(); i++) {
+                    db.update(DiskCacheEntity.class,
+                            WhereBuilder.b("key", "=", keyList.get(i)), statsList.get(i));
+                }
+            }
+        }, null);
+    }
+}
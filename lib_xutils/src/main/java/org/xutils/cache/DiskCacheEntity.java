@@ -1,6 +1,7 @@
 package org.xutils.cache;
 
 import org.xutils.db.annotation.Column;
+import org.xutils.db.annotation.Index;
 import org.xutils.db.annotation.Table;
 
 import java.util.Date;
@@ -9,7 +10,8 @@ import java.util.Date;
  * Created by wyouflf on 15/8/2.
  * 磁盘缓存对象
  */
-@Table(name = "disk_cache")
+@Table(name = "disk_cache",
+        indexes = {@Index(columns = {"lastAccess", "hits"})})
 public final class DiskCacheEntity {
 
     @Column(name = "id", isId = true)
@@ -18,12 +20,17 @@ public final class DiskCacheEntity {
     @Column(name = "key", property = "UNIQUE")
     private String key;
 
+    @Index
     @Column(name = "path")
     private String path;
 
     @Column(name = "textContent")
     private String textContent;
 
+    // gzip压缩后的textContent
+    @Column(name = "content")
+    private byte[] content;
+
     // from "max-age" (since http 1.1)
     @Column(name = "expires")
     private long expires = Long.MAX_VALUE;
@@ -76,6 +83,14 @@ public final class DiskCacheEntity {
         this.textContent = textContent;
     }
 
+    /*package*/ byte[] getContent() {
+        return content;
+    }
+
+    /*package*/ void setContent(byte[] content) {
+        this.content = content;
+    }
+
     public long getExpires() {
         return expires;
     }
@@ -115,4 +130,19 @@ public final class DiskCacheEntity {
     public void setLastAccess(long lastAccess) {
         this.lastAccess = lastAccess;
     }
+
+    /*package*/ DiskCacheEntity copy() {
+        DiskCacheEntity result = new DiskCacheEntity();
+        result.id = id;
+        result.key = key;
+        result.path = path;
+        result.textContent = textContent;
+        result.content = content;
+        result.expires = expires;
+        result.etag = etag;
+        result.hits = hits;
+        result.lastModify = lastModify;
+        result.lastAccess = lastAccess;
+        return result;
+    }
 }
@@ -0,0 +1,45 @@
+package org.xutils.cache;
+
+import org.xutils.DbManager;
+
+import java.util.List;
+
+/**
+ * LruDiskCache的索引存储.
+ * 所有方法在LruDiskCache的调用线程或trimExecutor中调用, 实现需要线程安全.
+ */
+/*package*/ interface DiskCacheStore {
+
+    /**
+     * 遍历所有缓存, 用于加载内存索引.
+     * 较长的文本可以不返回(textContent和content为null), 需要时通过find读取.
+     */
+    void forEach(DbManager.ForEachCallback<DiskCacheEntity> callback) throws Throwable;
+
+    DiskCacheEntity find(String key) throws Throwable;
+
+    long count() throws Throwable;
+
+    boolean containsPath(String path) throws Throwable;
+
+    void replace(DiskCacheEntity entity) throws Throwable;
+
+    void delete(List<String> keys) throws Throwable;
+
+    /**
+     * 按lastAccess, hits顺序遍历, 返回的对象只保证有key和path.
+     *
+     * @param fileOnly 只遍历有缓存文件的数据
+     */
+    void forEachOldest(boolean fileOnly, DbManager.ForEachCallback<DiskCacheEntity> callback) throws Throwable;
+
+    /**
+     * 删除并返回过期的缓存数据
+     */
+    List<DiskCacheEntity> deleteExpiry(long time) throws Throwable;
+
+    /**
+     * 批量更新hits和lastAccess
+     */
+    void updateStats(List<DiskCacheEntity> entries) throws Throwable;
+}
@@ -0,0 +1,561 @@
+package org.xutils.cache;
+
+import org.xutils.DbManager;
+import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * 使用追加写入的日志文件保存的缓存索引.
+ * 每次修改追加一条记录(put, stats, delete), 写入后只flush到系统缓冲区, 不做fsync;
+ * 意外退出时丢弃末尾不完整的记录.
+ * 无效记录超过2000条并且超过有效记录数时, 在后台线程中重写日志文件(参考 DiskLruCache).
+ * 内存中只保存每个key的元数据和put记录在日志中的位置, 文本内容需要时从日志读取.
+ * 日志文件没有跨进程的保护, 只能在一个进程中使用.
+ */
+/*package*/ final class JournalDiskCacheStore implements DiskCacheStore {
+
+    private static final int MAGIC = 0x78553143;
+    private static final int VERSION = 1;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_STATS = 2;
+    private static final byte OP_DELETE = 3;
+
+    private static final int COMPACT_THRESHOLD = 2000;
+    private static final int HEADER_LENGTH = 8;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    private final File journalFile;
+    private final File journalFileTmp;
+    private final Executor compactExecutor;
+
+    private final HashMap<String, Record> recordMap = new HashMap<String, Record>();
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+    private OutputStream writer;
+    private RandomAccessFile reader;
+    private long journalLength;
+    private int redundantOpCount;
+    private boolean loaded = false;
+    private boolean compactScheduled = false;
+
+    private final Runnable compactRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (JournalDiskCacheStore.this) {
+                compactScheduled = false;
+                try {
+                    compactIfNeeded();
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param compactExecutor 执行日志重写的线程池
+     */
+    public JournalDiskCacheStore(File journalFile, Executor compactExecutor) {
+        this.journalFile = journalFile;
+        this.journalFileTmp = new File(journalFile.getAbsolutePath() + ".tmp");
+        this.compactExecutor = compactExecutor;
+    }
+
+    @Override
+    public synchronized void forEach(DbManager.ForEachCallback<DiskCacheEntity> callback) throws Throwable {
+        LinkedHashMap<String, DiskCacheEntity> entityMap = new LinkedHashMap<String, DiskCacheEntity>();
+        replay(entityMap);
+        for (DiskCacheEntity entity : entityMap.values()) {
+            if (!callback.onEach(entity)) break;
+        }
+    }
+
+    @Override
+    public synchronized DiskCacheEntity find(String key) throws Throwable {
+        ensureLoaded();
+        Record record = recordMap.get(key);
+        if (record == null) return null;
+        DiskCacheEntity entity = readEntity(record);
+        entity.setHits(record.hits);
+        entity.setLastAccess(record.lastAccess);
+        return entity;
+    }
+
+    @Override
+    public synchronized long count() throws Throwable {
+        ensureLoaded();
+        return recordMap.size();
+    }
+
+    @Override
+    public synchronized boolean containsPath(String path) throws Throwable {
+        ensureLoaded();
+        for (Record record : recordMap.values()) {
+            if (path.equals(record.path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void replace(DiskCacheEntity entity) throws Throwable {
+        ensureLoaded();
+        recordBuffer.reset();
+        recordOut.writeByte(OP_PUT);
+        writeEntity(recordOut, entity);
+        long offset = append();
+
+        Record record = new Record(entity);
+        record.offset = offset;
+        record.length = recordBuffer.size();
+        if (recordMap.put(record.key, record) != null) {
+            redundantOpCount++;
+        }
+        scheduleCompact();
+    }
+
+    @Override
+    public synchronized void delete(List<String> keys) throws Throwable {
+        ensureLoaded();
+        for (String key : keys) {
+            if (recordMap.remove(key) != null) {
+                writeDelete(key);
+            }
+        }
+        scheduleCompact();
+    }
+
+    @Override
+    public synchronized void forEachOldest(boolean fileOnly,
+                                           DbManager.ForEachCallback<DiskCacheEntity> callback) throws Throwable {
+        ensureLoaded();
+        List<Record> recordList = new ArrayList<Record>(recordMap.size());
+        for (Record record : recordMap.values()) {
+            if (!fileOnly || record.path != null) {
+                recordList.add(record);
+            }
+        }
+        Collections.sort(recordList, OLDEST_FIRST);
+        for (Record record : recordList) {
+            if (!callback.onEach(record.toEntity())) break;
+        }
+    }
+
+    @Override
+    public synchronized List<DiskCacheEntity> deleteExpiry(long time) throws Throwable {
+        ensureLoaded();
+        List<DiskCacheEntity> rmList = new ArrayList<DiskCacheEntity>();
+        for (Record record : recordMap.values()) {
+            if (record.expires < time) {
+                rmList.add(record.toEntity());
+            }
+        }
+        for (DiskCacheEntity entity : rmList) {
+            recordMap.remove(entity.getKey());
+            writeDelete(entity.getKey());
+        }
+        scheduleCompact();
+        return rmList;
+    }
+
+    @Override
+    public synchronized void updateStats(List<DiskCacheEntity> entries) throws Throwable {
+        ensureLoaded();
+        for (DiskCacheEntity entry : entries) {
+            Record record = recordMap.get(entry.getKey());
+            if (record == null) continue;
+            record.hits = entry.getHits();
+            record.lastAccess = entry.getLastAccess();
+
+            recordBuffer.reset();
+            recordOut.writeByte(OP_STATS);
+            recordOut.writeUTF(record.key);
+            recordOut.writeLong(record.hits);
+            recordOut.writeLong(record.lastAccess);
+            append();
+            redundantOpCount++;
+        }
+        scheduleCompact();
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (!loaded) {
+            replay(null);
+        }
+    }
+
+    /**
+     * 读取日志文件, 重建内存中的记录
+     *
+     * @param entityMap 不为null时保存每个key最新的缓存数据(较长的文本不保存)
+     */
+    private void replay(Map<String, DiskCacheEntity> entityMap) throws IOException {
+        closeFiles();
+        recordMap.clear();
+        redundantOpCount = 0;
+        journalLength = 0;
+
+        if (journalFile.exists()) {
+            CountingInputStream counter = null;
+            DataInputStream in = null;
+            try {
+                counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+                in = new DataInputStream(counter);
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    journalLength = HEADER_LENGTH;
+                    while (true) {
+                        long offset = counter.count;
+                        byte op = in.readByte();
+                        if (op == OP_PUT) {
+                            DiskCacheEntity entity = readEntity(in,
+                                    entityMap == null ? -1 : LruDiskCache.MEMORY_TEXT_LIMIT);
+                            Record record = new Record(entity);
+                            record.offset = offset;
+                            record.length = (int) (counter.count - offset);
+                            if (recordMap.put(record.key, record) != null) {
+                                redundantOpCount++;
+                            }
+                            if (entityMap != null) {
+                                entityMap.remove(record.key);
+                                entityMap.put(record.key, entity);
+                            }
+                        } else if (op == OP_STATS) {
+                            String key = in.readUTF();
+                            long hits = in.readLong();
+                            long lastAccess = in.readLong();
+                            Record record = recordMap.get(key);
+                            if (record != null) {
+                                record.hits = hits;
+                                record.lastAccess = lastAccess;
+                                if (entityMap != null) {
+                                    DiskCacheEntity entity = entityMap.get(key);
+                                    entity.setHits(hits);
+                                    entity.setLastAccess(lastAccess);
+                                }
+                            }
+                            redundantOpCount++;
+                        } else if (op == OP_DELETE) {
+                            String key = in.readUTF();
+                            if (recordMap.remove(key) != null) {
+                                redundantOpCount++;
+                            }
+                            if (entityMap != null) {
+                                entityMap.remove(key);
+                            }
+                            redundantOpCount++;
+                        } else {
+                            throw new IOException("unknown journal op: " + op);
+                        }
+                        journalLength = counter.count;
+                    }
+                }
+            } catch (EOFException ignored) {
+                // 末尾不完整的记录
+            } catch (IOException ex) {
+                LogUtil.w("journal corrupted: " + journalFile.getAbsolutePath(), ex);
+            } finally {
+                IOUtil.closeQuietly(in);
+            }
+        }
+
+        if (journalLength < HEADER_LENGTH) {
+            // 新建或无法识别的日志文件
+            recordMap.clear();
+            if (entityMap != null) {
+                entityMap.clear();
+            }
+            writeHeader(journalFile);
+            journalLength = HEADER_LENGTH;
+        }
+        loaded = true;
+    }
+
+    private long append() throws IOException {
+        if (writer == null) {
+            // 丢弃上次写入失败留下的不完整记录
+            RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+            try {
+                file.setLength(journalLength);
+            } finally {
+                IOUtil.closeQuietly(file);
+            }
+            writer = new BufferedOutputStream(new FileOutputStream(journalFile, true));
+        }
+
+        long offset = journalLength;
+        try {
+            recordBuffer.writeTo(writer);
+            writer.flush();
+        } catch (IOException ex) {
+            IOUtil.closeQuietly(writer);
+            writer = null;
+            throw ex;
+        }
+        journalLength += recordBuffer.size();
+        return offset;
+    }
+
+    private void writeDelete(String key) throws IOException {
+        recordBuffer.reset();
+        recordOut.writeByte(OP_DELETE);
+        recordOut.writeUTF(key);
+        append();
+        redundantOpCount += 2;
+    }
+
+    private boolean needsCompact() {
+        return redundantOpCount >= COMPACT_THRESHOLD && redundantOpCount >= recordMap.size();
+    }
+
+    private void scheduleCompact() {
+        if (!compactScheduled && needsCompact()) {
+            compactScheduled = true;
+            compactExecutor.execute(compactRunnable);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (!needsCompact()) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        OutputStream out = null;
+        HashMap<String, Record> newRecordMap = new HashMap<String, Record>(recordMap.size());
+        long newLength = HEADER_LENGTH;
+        try {
+            writeHeader(journalFileTmp);
+            out = new BufferedOutputStream(new FileOutputStream(journalFileTmp, true));
+            for (Record record : recordMap.values()) {
+                DiskCacheEntity entity = readEntity(record);
+                entity.setHits(record.hits);
+                entity.setLastAccess(record.lastAccess);
+
+                recordBuffer.reset();
+                recordOut.writeByte(OP_PUT);
+                writeEntity(recordOut, entity);
+                recordBuffer.writeTo(out);
+
+                Record newRecord = new Record(entity);
+                newRecord.offset = newLength;
+                newRecord.length = recordBuffer.size();
+                newRecordMap.put(newRecord.key, newRecord);
+                newLength += newRecord.length;
+            }
+            out.flush();
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+
+        closeFiles();
+        if (!journalFileTmp.renameTo(journalFile)) {
+            IOUtil.deleteFileOrDir(journalFileTmp);
+            throw new IOException("rename: " + journalFileTmp.getAbsolutePath());
+        }
+        recordMap.clear();
+        recordMap.putAll(newRecordMap);
+        journalLength = newLength;
+        redundantOpCount = 0;
+        LogUtil.d("journal compacted: " + recordMap.size() + " records, "
+                + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    private DiskCacheEntity readEntity(Record record) throws IOException {
+        if (reader == null) {
+            reader = new RandomAccessFile(journalFile, "r");
+        }
+        byte[] buffer = new byte[record.length];
+        reader.seek(record.offset);
+        reader.readFully(buffer);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer));
+        if (in.readByte() != OP_PUT) {
+            throw new IOException("bad journal offset: " + record.offset);
+        }
+        return readEntity(in, Integer.MAX_VALUE);
+    }
+
+    private void closeFiles() {
+        IOUtil.closeQuietly(writer);
+        writer = null;
+        IOUtil.closeQuietly(reader);
+        reader = null;
+    }
+
+    private static void writeHeader(File file) throws IOException {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(file));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+    }
+
+    private static void writeEntity(DataOutputStream out, DiskCacheEntity entity) throws IOException {
+        out.writeUTF(entity.getKey());
+        writeString(out, entity.getPath());
+        writeString(out, entity.getEtag());
+        out.writeLong(entity.getExpires());
+        Date lastModify = entity.getLastModify();
+        out.writeLong(lastModify == null ? NULL_DATE : lastModify.getTime());
+        out.writeLong(entity.getHits());
+        out.writeLong(entity.getLastAccess());
+        String textContent = entity.getTextContent();
+        writeBytes(out, textContent == null ? null : textContent.getBytes("UTF-8"));
+        writeBytes(out, entity.getContent());
+    }
+
+    /**
+     * @param textLimit 超过该长度的文本内容不读取
+     */
+    private static DiskCacheEntity readEntity(DataInput in, int textLimit) throws IOException {
+        DiskCacheEntity entity = new DiskCacheEntity();
+        entity.setKey(in.readUTF());
+        entity.setPath(readString(in));
+        entity.setEtag(readString(in));
+        entity.setExpires(in.readLong());
+        long lastModify = in.readLong();
+        entity.setLastModify(lastModify == NULL_DATE ? null : new Date(lastModify));
+        entity.setHits(in.readLong());
+        entity.setLastAccess(in.readLong());
+        byte[] text = readBytes(in, textLimit);
+        entity.setTextContent(text == null ? null : new String(text, "UTF-8"));
+        entity.setContent(readBytes(in, textLimit));
+        return entity;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInput in, int limit) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        if (length > limit) {
+            skipFully(in, length);
+            return null;
+        }
+        byte[] result = new byte[length];
+        in.readFully(result);
+        return result;
+    }
+
+    private static void skipFully(DataInput in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) throw new EOFException();
+            length -= skipped;
+        }
+    }
+
+    private static final Comparator<Record> OLDEST_FIRST = new Comparator<Record>() {
+        @Override
+        public int compare(Record lhs, Record rhs) {
+            if (lhs.lastAccess != rhs.lastAccess) {
+                return lhs.lastAccess < rhs.lastAccess ? -1 : 1;
+            }
+            return lhs.hits < rhs.hits ? -1 : (lhs.hits == rhs.hits ? 0 : 1);
+        }
+    };
+
+    private static final class Record {
+        final String key;
+        final String path;
+        final long expires;
+        long hits;
+        long lastAccess;
+        long offset; // put记录在日志中的位置
+        int length;
+
+        Record(DiskCacheEntity entity) {
+            this.key = entity.getKey();
+            this.path = entity.getPath();
+            this.expires = entity.getExpires();
+            this.hits = entity.getHits();
+            this.lastAccess = entity.getLastAccess();
+        }
+
+        DiskCacheEntity toEntity() {
+            DiskCacheEntity entity = new DiskCacheEntity();
+            entity.setKey(key);
+            entity.setPath(path);
+            entity.setExpires(expires);
+            return entity;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result != -1) count++;
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int result = super.read(buffer, offset, length);
+            if (result > 0) count += result;
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            count += result;
+            return result;
+        }
+    }
+}
@@ -27,8 +27,39 @@ import java.util.Map;
  * overview.
  */
 public class LruCache<K, V> {
+
+    /**
+     * Eviction policy of the cache.
+     */
+    public enum Policy {
+        /**
+         * Plain LRU.
+         */
+        LRU,
+        /**
+         * W-TinyLFU style: new entries go to a small LRU window (1% of
+         * maxSize); when the window overflows, its eldest entry is admitted to
+         * the main LRU only if it was requested more often than the entries it
+         * would evict. One-off entries (e.g. a fast scroll through an image feed)
+         * are dropped instead of flushing entries that are used again and again.
+         */
+        TINY_LFU
+    }
+
+    private static final int WINDOW_PERCENT = 1;
+    // Entry sizes vary a lot (small icons vs. large images), so the number of
+    // cached entries underestimates how many keys compete for the space; the
+    // frequency sketch is sized for more keys to keep their counts long enough.
+    private static final int SKETCH_ENTRY_FACTOR = 16;
+    private static final int MAX_SKETCH_CAPACITY = 1 << 20;
+
     private final LinkedHashMap<K, V> map;
 
+    // TINY_LFU only
+    private final LinkedHashMap<K, V> window;
+    private final FrequencySketch sketch;
+    private int windowSize;
+
     /**
      * Size of this cache in units. Not necessarily the number of elements.
      */
@@ -47,11 +78,26 @@ public class LruCache<K, V> {
      *                this is the maximum sum of the sizes of the entries in this cache.
      */
     public LruCache(int maxSize) {
+        this(maxSize, Policy.LRU);
+    }
+
+    /**
+     * @param maxSize see {@link #LruCache(int)}
+     * @param policy  eviction policy, see {@link Policy}
+     */
+    public LruCache(int maxSize, Policy policy) {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("maxSize <= 0");
         }
         this.maxSize = maxSize;
         this.map = new LinkedHashMap<K, V>(0, 0.75f, true);
+        if (policy == Policy.TINY_LFU) {
+            this.window = new LinkedHashMap<K, V>(0, 0.75f, true);
+            this.sketch = new FrequencySketch();
+        } else {
+            this.window = null;
+            this.sketch = null;
+        }
     }
 
     /**
@@ -83,7 +129,10 @@ public class LruCache<K, V> {
 
         V mapValue;
         synchronized (this) {
-            mapValue = map.get(key);
+            if (sketch != null) {
+                sketch.increment(key);
+            }
+            mapValue = getEntry(key);
             if (mapValue != null) {
                 hitCount++;
                 return mapValue;
@@ -105,13 +154,13 @@ public class LruCache<K, V> {
 
         synchronized (this) {
             createCount++;
-            mapValue = map.put(key, createdValue);
+            mapValue = getEntry(key);
 
-            if (mapValue != null) {
-                // There was a conflict so undo that last put
-                map.put(key, mapValue);
-            } else {
-                size += safeSizeOf(key, createdValue);
+            if (mapValue == null) {
+                // No conflict, add the created value
+                int createdSize = safeSizeOf(key, createdValue);
+                putEntry(key, createdValue, createdSize);
+                size += createdSize;
             }
         }
 
@@ -138,8 +187,9 @@ public class LruCache<K, V> {
         V previous;
         synchronized (this) {
             putCount++;
-            size += safeSizeOf(key, value);
-            previous = map.put(key, value);
+            int valueSize = safeSizeOf(key, value);
+            size += valueSize;
+            previous = putEntry(key, value, valueSize);
             if (previous != null) {
                 size -= safeSizeOf(key, previous);
             }
@@ -165,19 +215,27 @@ public class LruCache<K, V> {
             K key;
             V value;
             synchronized (this) {
-                if (size < 0 || (map.isEmpty() && size != 0)) {
+                if (size < 0 || (map.isEmpty() && (window == null || window.isEmpty()) && size != 0)) {
                     throw new IllegalStateException(getClass().getName()
                             + ".sizeOf() is reporting inconsistent results!");
                 }
 
-                if (size <= maxSize || map.isEmpty()) {
-                    break;
+                Map.Entry<K, V> toEvict;
+                if (window == null) {
+                    if (size <= maxSize || map.isEmpty()) {
+                        break;
+                    }
+                    toEvict = map.entrySet().iterator().next();
+                    map.remove(toEvict.getKey());
+                } else {
+                    toEvict = nextTinyLfuEviction(maxSize);
+                    if (toEvict == null) {
+                        break;
+                    }
                 }
 
-                Map.Entry<K, V> toEvict = map.entrySet().iterator().next();
                 key = toEvict.getKey();
                 value = toEvict.getValue();
-                map.remove(key);
                 size -= safeSizeOf(key, value);
                 evictionCount++;
             }
@@ -199,6 +257,12 @@ public class LruCache<K, V> {
         V previous;
         synchronized (this) {
             previous = map.remove(key);
+            if (previous == null && window != null) {
+                previous = window.remove(key);
+                if (previous != null) {
+                    windowSize -= safeSizeOf(key, previous);
+                }
+            }
             if (previous != null) {
                 size -= safeSizeOf(key, previous);
             }
@@ -211,6 +275,86 @@ public class LruCache<K, V> {
         return previous;
     }
 
+    private V getEntry(K key) {
+        V value = map.get(key);
+        if (value == null && window != null) {
+            value = window.get(key);
+        }
+        return value;
+    }
+
+    /**
+     * With {@link Policy#TINY_LFU} new entries are added to the window,
+     * entries already in the main space are replaced in place.
+     *
+     * @return the previous value mapped by {@code key}.
+     */
+    private V putEntry(K key, V value, int valueSize) {
+        if (window == null || map.containsKey(key)) {
+            return map.put(key, value);
+        }
+
+        V previous = window.put(key, value);
+        windowSize += valueSize;
+        if (previous != null) {
+            windowSize -= safeSizeOf(key, previous);
+        } else {
+            sketch.ensureCapacity(Math.min(
+                    (map.size() + window.size()) * SKETCH_ENTRY_FACTOR, MAX_SKETCH_CAPACITY));
+        }
+        return previous;
+    }
+
+    /**
+     * Moves overflowing window entries to the main space and picks the next
+     * entry to evict, or null if the cache fits in {@code maxSize}.
+     * The eldest window entry (candidate) is compared with the eldest main
+     * entry (victim) as many times as needed to make room for it, the less
+     * frequently used one is evicted each time.
+     */
+    private Map.Entry<K, V> nextTinyLfuEviction(int maxSize) {
+        int windowMaxSize = (int) ((long) maxSize * WINDOW_PERCENT / 100);
+        while (true) {
+            if (windowSize > windowMaxSize && !window.isEmpty()) {
+                Map.Entry<K, V> candidate = window.entrySet().iterator().next();
+                int candidateSize = safeSizeOf(candidate.getKey(), candidate.getValue());
+                if (size <= maxSize) {
+                    window.remove(candidate.getKey());
+                    windowSize -= candidateSize;
+                    map.put(candidate.getKey(), candidate.getValue());
+                    continue;
+                }
+
+                if (!map.isEmpty()) {
+                    Map.Entry<K, V> victim = map.entrySet().iterator().next();
+                    if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+                        map.remove(victim.getKey());
+                        return victim;
+                    }
+                }
+                window.remove(candidate.getKey());
+                windowSize -= candidateSize;
+                return candidate;
+            }
+
+            if (size <= maxSize) {
+                return null;
+            }
+
+            if (!map.isEmpty()) {
+                Map.Entry<K, V> victim = map.entrySet().iterator().next();
+                map.remove(victim.getKey());
+                return victim;
+            } else if (!window.isEmpty()) {
+                Map.Entry<K, V> victim = window.entrySet().iterator().next();
+                window.remove(victim.getKey());
+                windowSize -= safeSizeOf(victim.getKey(), victim.getValue());
+                return victim;
+            }
+            return null;
+        }
+    }
+
     /**
      * Called for entries that have been evicted or removed. This method is
      * invoked when a value is evicted to make space, removed by a call to
@@ -330,7 +474,11 @@ public class LruCache<K, V> {
      * recently accessed to most recently accessed.
      */
     public synchronized final Map<K, V> snapshot() {
-        return new LinkedHashMap<K, V>(map);
+        LinkedHashMap<K, V> result = new LinkedHashMap<K, V>(map);
+        if (window != null) {
+            result.putAll(window);
+        }
+        return result;
     }
 
     @Override
@@ -11,20 +11,23 @@ import org.xutils.common.util.LogUtil;
 import org.xutils.common.util.MD5;
 import org.xutils.common.util.ProcessLock;
 import org.xutils.config.DbConfigs;
-import org.xutils.db.sqlite.WhereBuilder;
-import org.xutils.ex.DbException;
 import org.xutils.ex.FileLockedException;
 import org.xutils.x;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by wyouflf on 15/7/23.
- * 使用sqlite索引实现的LruDiskCache
+ * 使用sqlite或日志文件索引实现的LruDiskCache
  */
 public final class LruDiskCache {
 
@@ -36,34 +39,89 @@ public final class LruDiskCache {
     private static final int LOCK_WAIT = 1000 * 3; // 3s
     private static final String CACHE_DIR_NAME = "xUtils_cache";
     private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final int MIN_COMPRESS_LENGTH = 256; // 压缩存储的最小文本长度
+
+    /**
+     * 缓存索引的存储方式
+     */
+    public enum StoreType {
+        DB, // sqlite(DbConfigs.HTTP)
+        JOURNAL // 缓存目录旁的日志文件, 写入时没有事务和fsync的开销, 不支持多进程同时使用
+    }
 
     private boolean available = false;
-    private final DbManager cacheDb;
+    private final DiskCacheStore store;
     private File cacheDir;
     private long diskCacheSize = LIMIT_SIZE;
     private final Executor trimExecutor = new PriorityExecutor(1, true);
+    private final AtomicLong cacheFilesSize = new AtomicLong(0L); // 缓存文件的总大小, 启动时统计一次, 之后增量更新.
+
+    // 内存中的索引, 打开时从索引存储加载, 加载完成前直接查询索引存储.
+    /*package*/ static final int MEMORY_TEXT_LIMIT = 1024; // 文本不超过该长度时保存在内存索引中
+    private static final int MEMORY_PAYLOAD_BUDGET = 1024 * 1024 * 4; // 较长文本在内存中占用的字节数上限
+    private final ConcurrentHashMap<String, DiskCacheEntity> entryMap =
+            new ConcurrentHashMap<String, DiskCacheEntity>();
+    // 较长的文本(String或压缩后的byte[])按LRU保存在内存中, 超出预算时才需要从索引存储读取.
+    private final LruCache<String, Object> payloadCache = new LruCache<String, Object>(MEMORY_PAYLOAD_BUDGET) {
+        @Override
+        protected int sizeOf(String key, Object value) {
+            return value instanceof String ? ((String) value).length() * 2 : ((byte[]) value).length;
+        }
+    };
+    private volatile boolean indexLoaded = false;
+
+    // 缓存命中统计(hits, lastAccess)合并写入
+    private static final int STATS_FLUSH_HITS = 100;
+    private static final long STATS_FLUSH_INTERVAL = 5000;
+    private final HashMap<String, DiskCacheEntity> pendingStatsMap = new HashMap<String, DiskCacheEntity>();
+    private int pendingHitCount = 0;
+    private final Runnable flushStatsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushStats();
+        }
+    };
 
     // delete expires
     private long lastDeleteExpiryTime = 0L;
     private static final long DELETE_EXPIRY_SPAN = 1000;
 
-    public synchronized static LruDiskCache getDiskCache(String dirName) {
+    public static LruDiskCache getDiskCache(String dirName) {
+        return getDiskCache(dirName, StoreType.DB);
+    }
+
+    /**
+     * @param storeType 只在第一次获取dirName对应的缓存时有效,
+     *                  {@link StoreType#JOURNAL} 没有跨进程的保护, 多个进程使用同一个缓存目录时应使用 {@link StoreType#DB}.
+     */
+    public synchronized static LruDiskCache getDiskCache(String dirName, StoreType storeType) {
         if (TextUtils.isEmpty(dirName)) dirName = CACHE_DIR_NAME;
         LruDiskCache cache = DISK_CACHE_MAP.get(dirName);
         if (cache == null) {
-            cache = new LruDiskCache(dirName);
+            cache = new LruDiskCache(dirName, storeType);
             DISK_CACHE_MAP.put(dirName, cache);
+        } else if (cache.storeType != storeType) {
+            LogUtil.w("disk cache " + dirName + " already opened with " + cache.storeType);
         }
         return cache;
     }
 
-    private LruDiskCache(String dirName) {
-        this.cacheDb = x.getDb(DbConfigs.HTTP.getConfig());
+    private final StoreType storeType;
+
+    private LruDiskCache(String dirName, StoreType storeType) {
         this.cacheDir = FileUtil.getCacheDir(dirName);
         if (this.cacheDir != null && (this.cacheDir.exists() || this.cacheDir.mkdirs())) {
             available = true;
         }
-        deleteNoIndexFiles();
+        if (available && storeType == StoreType.JOURNAL) {
+            this.storeType = StoreType.JOURNAL;
+            this.store = new JournalDiskCacheStore(
+                    new File(cacheDir.getParentFile(), cacheDir.getName() + ".journal"), trimExecutor);
+        } else {
+            this.storeType = StoreType.DB;
+            this.store = new DbDiskCacheStore(x.getDb(DbConfigs.HTTP.getConfig()));
+        }
+        loadIndex();
     }
 
     public LruDiskCache setMaxSize(long maxSize) {
@@ -81,12 +139,22 @@ public final class LruDiskCache {
     public DiskCacheEntity get(String key) {
         if (!available || TextUtils.isEmpty(key)) return null;
 
+        DiskCacheEntity entry = null;
         DiskCacheEntity result = null;
-        try {
-            result = this.cacheDb.selector(DiskCacheEntity.class)
-                    .where("key", "=", key).findFirst();
-        } catch (Throwable ex) {
-            LogUtil.e(ex.getMessage(), ex);
+        if (indexLoaded) {
+            entry = entryMap.get(key);
+            if (entry != null) {
+                synchronized (pendingStatsMap) {
+                    result = entry.copy();
+                }
+            }
+        } else {
+            try {
+                result = store.find(key);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+            entry = result == null ? null : result.copy();
         }
 
         if (result != null) {
@@ -95,28 +163,57 @@ public final class LruDiskCache {
                 return null;
             }
 
-            { // update hint & lastAccess...
-                final DiskCacheEntity finalResult = result;
-                trimExecutor.execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        finalResult.setHits(finalResult.getHits() + 1);
-                        finalResult.setLastAccess(System.currentTimeMillis());
-                        try {
-                            cacheDb.update(finalResult, "hits", "lastAccess");
-                        } catch (Throwable ex) {
-                            LogUtil.e(ex.getMessage(), ex);
+            if (result.getPath() == null && result.getTextContent() == null && result.getContent() == null) {
+                // 较长的文本没有保存在内存索引中, 先从payloadCache读取,
+                // 超出内存预算被移除时才读取索引存储.
+                Object payload = payloadCache.get(key);
+                if (payload == null) {
+                    try {
+                        DiskCacheEntity storeEntity = store.find(key);
+                        if (storeEntity == null) {
+                            removeIndex(key);
+                            return null;
                         }
+                        putPayload(storeEntity);
+                        result.setTextContent(storeEntity.getTextContent());
+                        result.setContent(storeEntity.getContent());
+                    } catch (Throwable ex) {
+                        LogUtil.e(ex.getMessage(), ex);
+                        return null;
                     }
-                });
+                } else if (payload instanceof String) {
+                    result.setTextContent((String) payload);
+                } else {
+                    result.setContent((byte[]) payload);
+                }
+            }
+
+            byte[] content = result.getContent();
+            if (content != null) {
+                try {
+                    result.setTextContent(new String(IOUtil.gunzip(content), "UTF-8"));
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                    return null;
+                }
+                result.setContent(null);
             }
 
+            onHit(entry);
         }
 
         return result;
     }
 
     public void put(DiskCacheEntity entity) {
+        put(entity, false);
+    }
+
+    /**
+     * @param entity
+     * @param compress 是否使用gzip压缩存储textContent, 减少缓存占用的空间和读写的数据量.
+     */
+    public void put(DiskCacheEntity entity, boolean compress) {
         if (!available
                 || entity == null
                 || TextUtils.isEmpty(entity.getTextContent())
@@ -124,10 +221,27 @@ public final class LruDiskCache {
             return;
         }
 
+        String textContent = entity.getTextContent();
+        if (compress && textContent.length() >= MIN_COMPRESS_LENGTH) {
+            try {
+                entity.setContent(IOUtil.gzip(textContent.getBytes("UTF-8")));
+                entity.setTextContent(null);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+                entity.setContent(null);
+            }
+        }
+
         try {
-            cacheDb.replace(entity);
-        } catch (DbException ex) {
+            store.replace(entity);
+            entity.setTextContent(textContent);
+            entity.setContent(null);
+            putIndex(entity);
+        } catch (Throwable ex) {
             LogUtil.e(ex.getMessage(), ex);
+        } finally {
+            entity.setTextContent(textContent);
+            entity.setContent(null);
         }
 
         trimSize();
@@ -146,8 +260,9 @@ public final class LruDiskCache {
                 result = new DiskCacheFile(entity, entity.getPath(), processLock);
                 if (!result.exists()) {
                     try {
-                        cacheDb.delete(entity);
-                    } catch (DbException ex) {
+                        removeIndex(entity.getKey());
+                        store.delete(Collections.singletonList(entity.getKey()));
+                    } catch (Throwable ex) {
                         LogUtil.e(ex.getMessage(), ex);
                     }
                     result = null;
@@ -182,6 +297,14 @@ public final class LruDiskCache {
 
     public void clearCacheFiles() {
         IOUtil.deleteFileOrDir(cacheDir);
+        cacheFilesSize.set(FileUtil.getFileOrDirSize(cacheDir));
+    }
+
+    /**
+     * 缓存文件的总大小(不包含存储在数据库中的文本缓存)
+     */
+    public long getCacheFilesSize() {
+        return cacheFilesSize.get();
     }
 
     /**
@@ -208,11 +331,14 @@ public final class LruDiskCache {
                 processLock = ProcessLock.tryLock(destPath, true, LOCK_WAIT);
                 if (processLock != null && processLock.isValid()) { // lock
                     destFile = new DiskCacheFile(cacheEntity, destPath, processLock);
+                    long oldLength = destFile.length();
                     if (cacheFile.renameTo(destFile)) {
+                        cacheFilesSize.addAndGet(destFile.length() - oldLength);
                         try {
                             result = destFile;
-                            cacheDb.replace(cacheEntity);
-                        } catch (DbException ex) {
+                            store.replace(cacheEntity);
+                            putIndex(cacheEntity);
+                        } catch (Throwable ex) {
                             LogUtil.e(ex.getMessage(), ex);
                         }
 
@@ -250,59 +376,71 @@ public final class LruDiskCache {
                     // trim expires
                     deleteExpiry();
 
-                    // trim db
+                    // trim count
                     try {
-                        int count = (int) cacheDb.selector(DiskCacheEntity.class).count();
-                        if (count > LIMIT_COUNT + 10) {
-                            List<DiskCacheEntity> rmList = cacheDb.selector(DiskCacheEntity.class)
-                                    .orderBy("lastAccess").orderBy("hits")
-                                    .limit(count - LIMIT_COUNT).offset(0).findAll();
-                            if (rmList != null && rmList.size() > 0) {
-                                // delete cache files
-                                for (DiskCacheEntity entity : rmList) {
+                        final int rmCount = (int) store.count() - LIMIT_COUNT;
+                        if (rmCount > 10) {
+                            final List<String> rmKeyList = new ArrayList<String>();
+                            store.forEachOldest(false, new DbManager.ForEachCallback<DiskCacheEntity>() {
+                                private int index = 0;
+
+                                @Override
+                                public boolean onEach(DiskCacheEntity entity) {
                                     String path = entity.getPath();
                                     if (!TextUtils.isEmpty(path)) {
-                                        if (deleteFileWithLock(path)
+                                        if (deleteCacheFile(path)
                                                 && deleteFileWithLock(path + TEMP_FILE_SUFFIX)) {
-                                            // delete db entity
-                                            cacheDb.delete(entity);
+                                            rmKeyList.add(entity.getKey());
+                                            removeIndex(entity.getKey());
                                         }
                                     }
+                                    return ++index < rmCount;
                                 }
-
-                            }
+                            });
+                            store.delete(rmKeyList);
                         }
-                    } catch (DbException ex) {
+                    } catch (Throwable ex) {
                         LogUtil.e(ex.getMessage(), ex);
                     }
 
-                    // trim disk
-                    try {
-                        while (FileUtil.getFileOrDirSize(cacheDir) > diskCacheSize) {
-                            List<DiskCacheEntity> rmList = cacheDb.selector(DiskCacheEntity.class)
-                                    .orderBy("lastAccess").orderBy("hits").limit(10).offset(0).findAll();
-                            if (rmList != null && rmList.size() > 0) {
-                                // delete cache files
-                                for (DiskCacheEntity entity : rmList) {
-                                    String path = entity.getPath();
-                                    if (!TextUtils.isEmpty(path)) {
-                                        if (deleteFileWithLock(path)
-                                                && deleteFileWithLock(path + TEMP_FILE_SUFFIX)) {
-                                            // delete db entity
-                                            cacheDb.delete(entity);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    } catch (DbException ex) {
-                        LogUtil.e(ex.getMessage(), ex);
+                    // trim disk: 按lastAccess, hits顺序一次遍历删除, 直到总大小不超过限制.
+                    if (cacheFilesSize.get() > diskCacheSize) {
+                        trimFiles();
                     }
                 }
             }
         });
     }
 
+    private void trimFiles() {
+        final List<String> rmKeyList = new ArrayList<String>();
+        try {
+            store.forEachOldest(true, new DbManager.ForEachCallback<DiskCacheEntity>() {
+                @Override
+                public boolean onEach(DiskCacheEntity entity) {
+                    String path = entity.getPath();
+                    if (!TextUtils.isEmpty(path)
+                            && deleteCacheFile(path)
+                            && deleteFileWithLock(path + TEMP_FILE_SUFFIX)) {
+                        rmKeyList.add(entity.getKey());
+                        removeIndex(entity.getKey());
+                    }
+                    return cacheFilesSize.get() > diskCacheSize;
+                }
+            });
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+        }
+
+        if (!rmKeyList.isEmpty()) {
+            try {
+                store.delete(rmKeyList);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+        }
+    }
+
     private void deleteExpiry() {
         long current = System.currentTimeMillis();
         if (current - lastDeleteExpiryTime < DELETE_EXPIRY_SPAN) {
@@ -312,16 +450,14 @@ public final class LruDiskCache {
         }
 
         try {
-            WhereBuilder whereBuilder = WhereBuilder.b("expires", "<", System.currentTimeMillis());
-            List<DiskCacheEntity> rmList = cacheDb.selector(DiskCacheEntity.class).where(whereBuilder).findAll();
-            // delete db entities
-            cacheDb.delete(DiskCacheEntity.class, whereBuilder);
+            List<DiskCacheEntity> rmList = store.deleteExpiry(current);
             if (rmList != null && rmList.size() > 0) {
                 // delete cache files
                 for (DiskCacheEntity entity : rmList) {
+                    removeIndex(entity.getKey());
                     String path = entity.getPath();
                     if (!TextUtils.isEmpty(path)) {
-                        deleteFileWithLock(path);
+                        deleteCacheFile(path);
                     }
                 }
             }
@@ -331,21 +467,43 @@ public final class LruDiskCache {
     }
 
     /**
-     * 清理未被数据库索引的历史缓存文件
+     * 加载内存索引, 并删除没有索引的缓存文件.
      */
-    private void deleteNoIndexFiles() {
+    private void loadIndex() {
         trimExecutor.execute(new Runnable() {
             @Override
             public void run() {
                 if (available) {
+                    final HashSet<String> pathSet = new HashSet<String>();
+                    try {
+                        store.forEach(new DbManager.ForEachCallback<DiskCacheEntity>() {
+                            @Override
+                            public boolean onEach(DiskCacheEntity entity) {
+                                if (entity.getPath() != null) {
+                                    pathSet.add(entity.getPath());
+                                }
+                                if (entryMap.putIfAbsent(entity.getKey(), entity) == null) {
+                                    putPayload(entity);
+                                }
+                                trimMemoryText(entity);
+                                return true;
+                            }
+                        });
+                        indexLoaded = true;
+                    } catch (Throwable ex) {
+                        LogUtil.e(ex.getMessage(), ex);
+                    }
+
+                    // delete no index files
                     try {
                         File[] fileList = cacheDir.listFiles();
                         if (fileList != null) {
                             for (File file : fileList) {
                                 try {
-                                    long count = cacheDb.selector(DiskCacheEntity.class)
-                                            .where("path", "=", file.getAbsolutePath()).count();
-                                    if (count < 1) {
+                                    String path = file.getAbsolutePath();
+                                    if (pathSet.contains(path)) continue;
+                                    // 不在已加载的索引中(加载失败或加载后新写入), 再确认一次.
+                                    if (!store.containsPath(path)) {
                                         IOUtil.deleteFileOrDir(file);
                                     }
                                 } catch (Throwable ex) {
@@ -356,11 +514,121 @@ public final class LruDiskCache {
                     } catch (Throwable ex) {
                         LogUtil.e(ex.getMessage(), ex);
                     }
+
+                    // 统计一次缓存文件的总大小
+                    cacheFilesSize.set(FileUtil.getFileOrDirSize(cacheDir));
+                }
+            }
+        });
+    }
+
+    private void putIndex(DiskCacheEntity entity) {
+        DiskCacheEntity entry = entity.copy();
+        putPayload(entry);
+        trimMemoryText(entry);
+        entryMap.put(entry.getKey(), entry);
+    }
+
+    private void removeIndex(String key) {
+        entryMap.remove(key);
+        payloadCache.remove(key);
+    }
+
+    /**
+     * 较长的文本放入payloadCache, 较短的文本保存在内存索引中.
+     */
+    private void putPayload(DiskCacheEntity entity) {
+        if (isLargeText(entity)) {
+            String textContent = entity.getTextContent();
+            payloadCache.put(entity.getKey(), textContent != null ? textContent : entity.getContent());
+        } else {
+            payloadCache.remove(entity.getKey());
+        }
+    }
+
+    /**
+     * 较长的文本不保存在内存索引中, 命中时从payloadCache或索引存储读取.
+     */
+    private static void trimMemoryText(DiskCacheEntity entity) {
+        if (isLargeText(entity)) {
+            entity.setTextContent(null);
+            entity.setContent(null);
+        }
+    }
+
+    private static boolean isLargeText(DiskCacheEntity entity) {
+        String textContent = entity.getTextContent();
+        byte[] content = entity.getContent();
+        return (textContent != null && textContent.length() > MEMORY_TEXT_LIMIT)
+                || (content != null && content.length > MEMORY_TEXT_LIMIT);
+    }
+
+    /**
+     * 更新内存中的hits和lastAccess, 每STATS_FLUSH_HITS次命中或STATS_FLUSH_INTERVAL毫秒合并写入一次索引存储.
+     */
+    private void onHit(DiskCacheEntity entry) {
+        boolean flushNow = false;
+        boolean schedule = false;
+        synchronized (pendingStatsMap) {
+            entry.setHits(entry.getHits() + 1);
+            entry.setLastAccess(System.currentTimeMillis());
+            schedule = pendingStatsMap.isEmpty();
+            pendingStatsMap.put(entry.getKey(), entry);
+            if (++pendingHitCount >= STATS_FLUSH_HITS) {
+                flushNow = true;
+            }
+        }
+        if (flushNow) {
+            x.task().removeCallbacks(flushStatsRunnable);
+            flushStats();
+        } else if (schedule) {
+            x.task().postDelayed(flushStatsRunnable, STATS_FLUSH_INTERVAL);
+        }
+    }
+
+    private void flushStats() {
+        final List<DiskCacheEntity> statsList;
+        synchronized (pendingStatsMap) {
+            if (pendingStatsMap.isEmpty()) return;
+            statsList = new ArrayList<DiskCacheEntity>(pendingStatsMap.size());
+            for (DiskCacheEntity entry : pendingStatsMap.values()) {
+                DiskCacheEntity stats = new DiskCacheEntity();
+                stats.setKey(entry.getKey());
+                stats.setHits(entry.getHits());
+                stats.setLastAccess(entry.getLastAccess());
+                statsList.add(stats);
+            }
+            pendingStatsMap.clear();
+            pendingHitCount = 0;
+        }
+
+        trimExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    store.updateStats(statsList);
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
                 }
             }
         });
     }
 
+    /**
+     * 删除缓存文件并更新缓存文件总大小
+     */
+    private boolean deleteCacheFile(String path) {
+        File file = new File(path);
+        long length = file.length();
+        if (deleteFileWithLock(path)) {
+            if (length > 0) {
+                cacheFilesSize.addAndGet(-length);
+            }
+            return true;
+        }
+        return false;
+    }
+
     private boolean deleteFileWithLock(String path) {
         ProcessLock processLock = null;
         try {
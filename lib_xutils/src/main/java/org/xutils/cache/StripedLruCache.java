@@ -0,0 +1,354 @@
+package org.xutils.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分段加锁的LruCache, 用于多个线程同时读写的场景.
+ * 每个key按hash分配到一个分段, 分段内是LRU顺序, 读写只锁住对应的分段.
+ * 总大小超过maxSize时, 从轮流选出的几个分段中淘汰最久未访问的数据(近似的全局LRU).
+ * sizeOf, entryRemoved, create的含义与 {@link LruCache} 相同.
+ */
+public class StripedLruCache<K, V> {
+
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+    private static final int SAMPLE_COUNT = 4; // 每次淘汰时比较的分段数
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicInteger sampleIndex = new AtomicInteger(0);
+    private volatile int maxSize;
+
+    private final AtomicInteger putCount = new AtomicInteger(0);
+    private final AtomicInteger createCount = new AtomicInteger(0);
+    private final AtomicInteger evictionCount = new AtomicInteger(0);
+
+    public StripedLruCache(int maxSize) {
+        this(maxSize, DEFAULT_SEGMENT_COUNT);
+    }
+
+    /**
+     * @param maxSize      同 {@link LruCache#LruCache(int)}
+     * @param segmentCount 分段数, 向上取2的幂.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StripedLruCache(int maxSize, int segmentCount) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        int count = 1;
+        while (count < segmentCount) {
+            count <<= 1;
+        }
+        this.maxSize = maxSize;
+        this.segmentMask = count - 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<K, V>();
+        }
+    }
+
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            Node<V> node = segment.map.get(key);
+            if (node != null) {
+                node.accessTime = System.nanoTime();
+                segment.hitCount++;
+                return node.value;
+            }
+            segment.missCount++;
+        }
+
+        V createdValue = create(key);
+        if (createdValue == null) {
+            return null;
+        }
+
+        createCount.incrementAndGet();
+        Node<V> mapNode;
+        synchronized (segment) {
+            mapNode = segment.map.get(key);
+            if (mapNode == null) {
+                int createdSize = safeSizeOf(key, createdValue);
+                segment.map.put(key, new Node<V>(createdValue, createdSize));
+                size.addAndGet(createdSize);
+            } else {
+                mapNode.accessTime = System.nanoTime();
+            }
+        }
+
+        if (mapNode != null) {
+            entryRemoved(false, key, createdValue, mapNode.value);
+            return mapNode.value;
+        } else {
+            trimToSize(maxSize);
+            return createdValue;
+        }
+    }
+
+    public final V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+
+        putCount.incrementAndGet();
+        int valueSize = safeSizeOf(key, value);
+        Segment<K, V> segment = segmentFor(key);
+        Node<V> previous;
+        synchronized (segment) {
+            previous = segment.map.put(key, new Node<V>(value, valueSize));
+            size.addAndGet(valueSize - (previous == null ? 0 : previous.size));
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous.value, value);
+        }
+
+        trimToSize(maxSize);
+        return previous == null ? null : previous.value;
+    }
+
+    /**
+     * 淘汰数据直到总大小不超过maxSize
+     *
+     * @param maxSize 为-1时淘汰所有数据
+     */
+    public void trimToSize(int maxSize) {
+        while (size.get() > maxSize) {
+            Segment<K, V> victim = selectVictim();
+            if (victim == null) {
+                break;
+            }
+
+            K key = null;
+            Node<V> node = null;
+            synchronized (victim) {
+                Iterator<Map.Entry<K, Node<V>>> iterator = victim.map.entrySet().iterator();
+                if (iterator.hasNext()) {
+                    Map.Entry<K, Node<V>> entry = iterator.next();
+                    key = entry.getKey();
+                    node = entry.getValue();
+                    iterator.remove();
+                    size.addAndGet(-node.size);
+                }
+            }
+
+            if (node != null) {
+                evictionCount.incrementAndGet();
+                entryRemoved(true, key, node.value, null);
+            }
+        }
+    }
+
+    public final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+        Node<V> previous;
+        synchronized (segment) {
+            previous = segment.map.remove(key);
+            if (previous != null) {
+                size.addAndGet(-previous.size);
+            }
+        }
+
+        if (previous != null) {
+            entryRemoved(false, key, previous.value, null);
+            return previous.value;
+        }
+        return null;
+    }
+
+    /**
+     * 同 {@link LruCache#entryRemoved(boolean, Object, Object, Object)}, 不在锁内调用.
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    /**
+     * 同 {@link LruCache#create(Object)}, 不在锁内调用.
+     */
+    protected V create(K key) {
+        return null;
+    }
+
+    /**
+     * 同 {@link LruCache#sizeOf(Object, Object)}
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    public final void evictAll() {
+        trimToSize(-1);
+    }
+
+    public final int size() {
+        return size.get();
+    }
+
+    public final int maxSize() {
+        return maxSize;
+    }
+
+    public final int hitCount() {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                result += segment.hitCount;
+            }
+        }
+        return result;
+    }
+
+    public final int missCount() {
+        int result = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                result += segment.missCount;
+            }
+        }
+        return result;
+    }
+
+    public final int createCount() {
+        return createCount.get();
+    }
+
+    public final int putCount() {
+        return putCount.get();
+    }
+
+    public final int evictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 当前数据的副本, 按最后访问时间从旧到新排列.
+     */
+    public final Map<K, V> snapshot() {
+        List<SnapshotItem<K, V>> itemList = new ArrayList<SnapshotItem<K, V>>();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                for (Map.Entry<K, Node<V>> entry : segment.map.entrySet()) {
+                    itemList.add(new SnapshotItem<K, V>(entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        Collections.sort(itemList, new Comparator<SnapshotItem<K, V>>() {
+            @Override
+            public int compare(SnapshotItem<K, V> lhs, SnapshotItem<K, V> rhs) {
+                return lhs.accessTime < rhs.accessTime ? -1 : (lhs.accessTime == rhs.accessTime ? 0 : 1);
+            }
+        });
+        LinkedHashMap<K, V> result = new LinkedHashMap<K, V>(itemList.size());
+        for (SnapshotItem<K, V> item : itemList) {
+            result.put(item.key, item.value);
+        }
+        return result;
+    }
+
+    @Override
+    public final String toString() {
+        int hitCount = hitCount();
+        int missCount = missCount();
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return String.format("StripedLruCache[maxSize=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                maxSize, hitCount, missCount, hitPercent);
+    }
+
+    /**
+     * 从SAMPLE_COUNT个分段中选出最久未访问的数据所在的分段,
+     * 抽样的分段都为空时检查所有分段.
+     */
+    private Segment<K, V> selectVictim() {
+        int sampleCount = Math.min(SAMPLE_COUNT, segments.length);
+        int start = sampleIndex.getAndAdd(sampleCount);
+        Segment<K, V> victim = null;
+        long victimTime = Long.MAX_VALUE;
+        for (int i = 0; i < segments.length; i++) {
+            if (i >= sampleCount && victim != null) {
+                break;
+            }
+            Segment<K, V> segment = segments[(start + i) & segmentMask];
+            synchronized (segment) {
+                Iterator<Node<V>> iterator = segment.map.values().iterator();
+                if (iterator.hasNext()) {
+                    long accessTime = iterator.next().accessTime;
+                    if (victim == null || accessTime - victimTime < 0) {
+                        victim = segment;
+                        victimTime = accessTime;
+                    }
+                }
+            }
+        }
+        return victim;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return segments[hash & segmentMask];
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    private static final class Segment<K, V> {
+        final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<K, Node<V>>(0, 0.75f, true);
+        int hitCount;
+        int missCount;
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final int size; // 加入时的sizeOf, 移除时使用
+        long accessTime = System.nanoTime();
+
+        Node(V value, int size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    private static final class SnapshotItem<K, V> {
+        final K key;
+        final V value;
+        final long accessTime;
+
+        SnapshotItem(K key, Node<V> node) {
+            this.key = key;
+            this.value = node.value;
+            this.accessTime = node.accessTime;
+        }
+    }
+}
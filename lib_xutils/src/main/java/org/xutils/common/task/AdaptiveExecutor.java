@@ -0,0 +1,331 @@
+package org.xutils.common.task;
+
+import android.os.SystemClock;
+
+import org.xutils.common.util.LogUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按key(如请求的host)限制并发数, 并根据等待时间和吞吐量自动调整工作线程数的线程池.
+ * 超出key并发数限制的任务按优先级在该key的队列中等待, 不占用工作线程,
+ * 避免一个慢的host占满所有工作线程.
+ */
+public class AdaptiveExecutor implements Executor {
+
+    private static final long ADJUST_INTERVAL = 1000; // 调整线程数的最小间隔(ms)
+    private static final long WAIT_THRESHOLD = 100; // 任务在线程池中平均等待超过该值(ms)时尝试增加线程
+    private static final int HOLD_WINDOWS = 5; // 增加线程无效回退后, 暂停增加的周期数
+    private static final float EWMA_WEIGHT = 0.2f;
+    private static final AtomicLong SEQ_SEED = new AtomicLong(0);
+
+    private static final Comparator<KeyTask> FIFO_CMP = new Comparator<KeyTask>() {
+        @Override
+        public int compare(KeyTask lhs, KeyTask rhs) {
+            int result = lhs.priority.ordinal() - rhs.priority.ordinal();
+            return result == 0 ? (lhs.seq < rhs.seq ? -1 : (lhs.seq == rhs.seq ? 0 : 1)) : result;
+        }
+    };
+
+    private static final Comparator<KeyTask> FILO_CMP = new Comparator<KeyTask>() {
+        @Override
+        public int compare(KeyTask lhs, KeyTask rhs) {
+            return FIFO_CMP.compare(rhs, lhs);
+        }
+    };
+
+    private final PriorityExecutor executor;
+    private final boolean fifo;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private int maxPerKey;
+
+    private final HashMap<String, KeyQueue> keyQueueMap = new HashMap<String, KeyQueue>();
+    private int heldCount;
+
+    // 统计数据
+    private float avgWaitTime;
+    private float avgPoolWaitTime;
+    private float avgRunTime;
+    private float throughput;
+    private long windowStart = SystemClock.uptimeMillis();
+    private int windowCompleted;
+
+    // 上一次调整时的状态
+    private float lastThroughput;
+    private float lastRunTime;
+    private boolean lastGrown;
+    private int holdWindows;
+
+    /**
+     * @param minPoolSize 最少工作线程数
+     * @param maxPoolSize 最多工作线程数
+     * @param maxPerKey   每个key同时执行的任务数
+     * @param fifo        优先级相同时, 等待队列的是否优先执行先加入的任务.
+     */
+    public AdaptiveExecutor(int minPoolSize, int maxPoolSize, int maxPerKey, boolean fifo) {
+        this.minPoolSize = Math.max(1, minPoolSize);
+        this.maxPoolSize = Math.max(this.minPoolSize, maxPoolSize);
+        this.maxPerKey = Math.max(1, maxPerKey);
+        this.fifo = fifo;
+        this.executor = new PriorityExecutor(this.minPoolSize, fifo);
+    }
+
+    /**
+     * 返回按key限制并发数的Executor
+     */
+    public Executor forKey(final String key) {
+        return new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                AdaptiveExecutor.this.execute(key, runnable);
+            }
+        };
+    }
+
+    /**
+     * 执行不限制并发数的任务
+     */
+    @Override
+    public void execute(Runnable runnable) {
+        execute(null, runnable);
+    }
+
+    /**
+     * @param key      为null时不限制并发数
+     * @param runnable
+     */
+    public void execute(String key, Runnable runnable) {
+        Priority priority = runnable instanceof PriorityRunnable ?
+                ((PriorityRunnable) runnable).priority : Priority.DEFAULT;
+        KeyTask task = new KeyTask(key, priority, runnable);
+        if (key != null) {
+            synchronized (this) {
+                KeyQueue keyQueue = keyQueueMap.get(key);
+                if (keyQueue == null) {
+                    keyQueue = new KeyQueue(fifo);
+                    keyQueueMap.put(key, keyQueue);
+                }
+                if (keyQueue.running >= maxPerKey) {
+                    keyQueue.pending.add(task);
+                    heldCount++;
+                    return;
+                }
+                keyQueue.running++;
+            }
+        }
+        dispatch(task);
+    }
+
+    public synchronized int getMaxPerKey() {
+        return maxPerKey;
+    }
+
+    public void setMaxPerKey(int maxPerKey) {
+        if (maxPerKey <= 0) return;
+        List<KeyTask> readyTasks = new ArrayList<KeyTask>();
+        synchronized (this) {
+            this.maxPerKey = maxPerKey;
+            for (KeyQueue keyQueue : keyQueueMap.values()) {
+                while (keyQueue.running < maxPerKey && !keyQueue.pending.isEmpty()) {
+                    readyTasks.add(keyQueue.pending.poll());
+                    keyQueue.running++;
+                    heldCount--;
+                }
+            }
+        }
+        for (KeyTask task : readyTasks) {
+            dispatch(task);
+        }
+    }
+
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int getActiveCount() {
+        return executor.getThreadPoolExecutor().getActiveCount();
+    }
+
+    /**
+     * 等待执行的任务数, 包括因key并发数限制而等待的任务.
+     */
+    public synchronized int getQueueSize() {
+        return executor.getThreadPoolExecutor().getQueue().size() + heldCount;
+    }
+
+    /**
+     * 因key并发数限制而等待的任务数
+     */
+    public synchronized int getQueueSize(String key) {
+        KeyQueue keyQueue = keyQueueMap.get(key);
+        return keyQueue == null ? 0 : keyQueue.pending.size();
+    }
+
+    /**
+     * 已提交到线程池(执行中或在线程池中等待)的任务数
+     */
+    public synchronized int getRunningCount(String key) {
+        KeyQueue keyQueue = keyQueueMap.get(key);
+        return keyQueue == null ? 0 : keyQueue.running;
+    }
+
+    /**
+     * 任务从提交到开始执行的平均等待时间(ms)
+     */
+    public synchronized float getAvgWaitTime() {
+        return avgWaitTime;
+    }
+
+    /**
+     * 任务的平均执行时间(ms)
+     */
+    public synchronized float getAvgRunTime() {
+        return avgRunTime;
+    }
+
+    /**
+     * 最近一个统计周期内每秒完成的任务数
+     */
+    public synchronized float getThroughput() {
+        return throughput;
+    }
+
+    public boolean isBusy() {
+        return executor.isBusy();
+    }
+
+    private void dispatch(KeyTask task) {
+        task.dispatchTime = SystemClock.uptimeMillis();
+        executor.execute(new PriorityRunnable(task.priority, task));
+    }
+
+    private void onTaskFinished(KeyTask task, long startTime, long endTime) {
+        KeyTask next = null;
+        synchronized (this) {
+            avgWaitTime = ewma(avgWaitTime, startTime - task.submitTime);
+            avgPoolWaitTime = ewma(avgPoolWaitTime, startTime - task.dispatchTime);
+            avgRunTime = ewma(avgRunTime, endTime - startTime);
+            windowCompleted++;
+
+            if (task.key != null) {
+                KeyQueue keyQueue = keyQueueMap.get(task.key);
+                if (keyQueue != null) {
+                    keyQueue.running--;
+                    if (keyQueue.running < maxPerKey) {
+                        next = keyQueue.pending.poll();
+                    }
+                    if (next != null) {
+                        keyQueue.running++;
+                        heldCount--;
+                    } else if (keyQueue.running <= 0 && keyQueue.pending.isEmpty()) {
+                        keyQueueMap.remove(task.key);
+                    }
+                }
+            }
+
+            adjustPoolSize(endTime);
+        }
+
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    /**
+     * 每个统计周期调整一次工作线程数:
+     * 任务在线程池中等待时间过长时增加一个线程,
+     * 增加线程后吞吐量下降或执行时间明显变长(服务器或网络已经饱和)时回退;
+     * 线程池空闲时减少一个线程.
+     */
+    private void adjustPoolSize(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < ADJUST_INTERVAL) return;
+
+        throughput = windowCompleted * 1000f / elapsed;
+        int poolSize = executor.getPoolSize();
+        int queued = executor.getThreadPoolExecutor().getQueue().size();
+        int active = executor.getThreadPoolExecutor().getActiveCount();
+
+        int newSize = poolSize;
+        if (queued > 0 && avgPoolWaitTime > WAIT_THRESHOLD) {
+            if (lastGrown && (throughput < lastThroughput * 0.9f || avgRunTime > lastRunTime * 1.5f)) {
+                newSize = poolSize - 1;
+                holdWindows = HOLD_WINDOWS;
+            } else if (holdWindows > 0) {
+                holdWindows--;
+            } else {
+                newSize = poolSize + 1;
+            }
+        } else if (queued == 0 && active < poolSize - 1) {
+            newSize = poolSize - 1;
+        }
+        newSize = Math.max(minPoolSize, Math.min(maxPoolSize, newSize));
+
+        lastGrown = newSize > poolSize;
+        lastThroughput = throughput;
+        lastRunTime = avgRunTime;
+        windowStart = now;
+        windowCompleted = 0;
+
+        if (newSize != poolSize) {
+            executor.setPoolSize(newSize);
+            LogUtil.d("pool size: " + poolSize + " -> " + newSize
+                    + ", throughput: " + throughput + "/s"
+                    + ", wait: " + avgPoolWaitTime + "ms"
+                    + ", run: " + avgRunTime + "ms");
+        }
+    }
+
+    private static float ewma(float avg, long value) {
+        return avg == 0 ? value : avg + EWMA_WEIGHT * (value - avg);
+    }
+
+    private static final class KeyQueue {
+        int running;
+        final PriorityQueue<KeyTask> pending;
+
+        KeyQueue(boolean fifo) {
+            pending = new PriorityQueue<KeyTask>(8, fifo ? FIFO_CMP : FILO_CMP);
+        }
+    }
+
+    private final class KeyTask implements Runnable {
+        final String key;
+        final Priority priority;
+        final Runnable runnable;
+        final long seq = SEQ_SEED.getAndIncrement();
+        final long submitTime = SystemClock.uptimeMillis();
+        long dispatchTime;
+
+        KeyTask(String key, Priority priority, Runnable runnable) {
+            this.key = key;
+            this.priority = priority;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long startTime = SystemClock.uptimeMillis();
+            try {
+                runnable.run();
+            } finally {
+                onTaskFinished(this, startTime, SystemClock.uptimeMillis());
+            }
+        }
+    }
+}
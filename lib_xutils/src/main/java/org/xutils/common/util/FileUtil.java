@@ -8,9 +8,16 @@ import org.xutils.x;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 public class FileUtil {
 
+    /**
+     * 单次transferTo的最大字节数, 部分系统单次传输超过2G会失败.
+     */
+    public static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     private FileUtil() {
     }
 
@@ -102,7 +109,7 @@ public class FileUtil {
             try {
                 in = new FileInputStream(from);
                 out = new FileOutputStream(toFile);
-                IOUtil.copy(in, out);
+                transfer(in.getChannel(), out.getChannel(), from.length());
                 result = true;
             } catch (Throwable ex) {
                 LogUtil.d(ex.getMessage(), ex);
@@ -114,4 +121,40 @@ public class FileUtil {
         }
         return result;
     }
+
+    /**
+     * 移动文件到指定文件,
+     * 在同一个分区时直接重命名, 否则复制后删除源文件.
+     *
+     * @param from 源文件
+     * @param to   移动到的文件
+     * @return true 成功，false 失败
+     */
+    public static boolean move(File from, File to) {
+        if (from.renameTo(to)) {
+            return true;
+        }
+        if (copy(from.getAbsolutePath(), to.getAbsolutePath())) {
+            IOUtil.deleteFileOrDir(from);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 使用 FileChannel#transferTo 复制数据, 数据不经过java堆,
+     * 在in的当前位置读取count个字节(到达末尾时提前结束), 写入out的当前位置.
+     *
+     * @return 复制的字节数
+     */
+    public static long transfer(FileChannel in, FileChannel out, long count) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long len = in.transferTo(in.position(), Math.min(count - transferred, TRANSFER_CHUNK_SIZE), out);
+            if (len <= 0) break;
+            in.position(in.position() + len);
+            transferred += len;
+        }
+        return transferred;
+    }
 }
@@ -5,6 +5,7 @@ import android.text.TextUtils;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
@@ -15,6 +16,8 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class IOUtil {
 
@@ -108,6 +111,29 @@ public class IOUtil {
         writer.flush();
     }
 
+    public static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+        GZIPOutputStream gzipOut = null;
+        try {
+            gzipOut = new GZIPOutputStream(out);
+            gzipOut.write(data);
+            gzipOut.finish();
+        } finally {
+            closeQuietly(gzipOut);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] gunzip(byte[] data) throws IOException {
+        GZIPInputStream in = null;
+        try {
+            in = new GZIPInputStream(new ByteArrayInputStream(data));
+            return readBytes(in);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
     public static void copy(InputStream in, OutputStream out) throws IOException {
         if (!(in instanceof BufferedInputStream)) {
             in = new BufferedInputStream(in);
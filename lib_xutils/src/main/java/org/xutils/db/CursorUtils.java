@@ -17,15 +17,25 @@ package org.xutils.db;
 
 import android.database.Cursor;
 
+import org.xutils.DbManager.ForEachCallback;
+import org.xutils.common.util.IOUtil;
 import org.xutils.db.table.ColumnEntity;
 import org.xutils.db.table.DbModel;
+import org.xutils.db.table.EntityAdapter;
 import org.xutils.db.table.TableEntity;
 
+import org.xutils.ex.DbException;
+
 import java.util.HashMap;
 
 /*package*/ final class CursorUtils {
 
     public static <T> T getEntity(TableEntity<T> table, final Cursor cursor) throws Throwable {
+        EntityAdapter<T> adapter = table.getEntityAdapter();
+        if (adapter != null) {
+            return getEntity(adapter, cursor, getColumnIndexes(adapter, cursor));
+        }
+
         T entity = table.createEntity();
         HashMap<String, ColumnEntity> columnMap = table.getColumnMap();
         int columnCount = cursor.getColumnCount();
@@ -39,6 +49,24 @@ import java.util.HashMap;
         return entity;
     }
 
+    /**
+     * 使用EntityAdapter读取, columnIndexes对同一个cursor只需计算一次.
+     */
+    public static <T> T getEntity(EntityAdapter<T> adapter, final Cursor cursor, int[] columnIndexes) {
+        T entity = adapter.createEntity();
+        adapter.readCursor(entity, cursor, columnIndexes);
+        return entity;
+    }
+
+    public static int[] getColumnIndexes(EntityAdapter<?> adapter, final Cursor cursor) {
+        String[] columnNames = adapter.getColumnNames();
+        int[] result = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            result[i] = cursor.getColumnIndex(columnNames[i]);
+        }
+        return result;
+    }
+
     public static DbModel getDbModel(final Cursor cursor) {
         DbModel result = new DbModel();
         int columnCount = cursor.getColumnCount();
@@ -47,4 +75,22 @@ import java.util.HashMap;
         }
         return result;
     }
+
+    /**
+     * 逐行回调cursor中的DbModel, 结束后关闭cursor.
+     */
+    public static void forEachDbModel(final Cursor cursor, ForEachCallback<DbModel> callback) throws DbException {
+        if (cursor == null) return;
+        try {
+            while (cursor.moveToNext()) {
+                if (!callback.onEach(getDbModel(cursor))) {
+                    break;
+                }
+            }
+        } catch (Throwable e) {
+            throw new DbException(e);
+        } finally {
+            IOUtil.closeQuietly(cursor);
+        }
+    }
 }
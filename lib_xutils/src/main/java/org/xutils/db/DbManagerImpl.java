@@ -18,6 +18,7 @@ package org.xutils.db;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
 
 import org.xutils.DbManager;
 import org.xutils.common.util.IOUtil;
@@ -29,6 +30,7 @@ import org.xutils.db.sqlite.WhereBuilder;
 import org.xutils.db.table.ColumnEntity;
 import org.xutils.db.table.DbBase;
 import org.xutils.db.table.DbModel;
+import org.xutils.db.table.EntityAdapter;
 import org.xutils.db.table.TableEntity;
 import org.xutils.ex.DbException;
 import org.xutils.x;
@@ -36,6 +38,7 @@ import org.xutils.x;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -51,6 +54,9 @@ public final class DbManagerImpl extends DbBase {
     private SQLiteDatabase database;
     private DaoConfig daoConfig;
     private boolean allowTransaction;
+    private boolean writeAheadLogging;
+    private WriteBehindQueue writeBehindQueue;
+    private volatile Boolean upsertSupported;
 
     private DbManagerImpl(DaoConfig config) {
         if (config == null) {
@@ -112,6 +118,16 @@ public final class DbManagerImpl extends DbBase {
         return daoConfig;
     }
 
+    @Override
+    public synchronized WriteBehindQueue getWriteBehindQueue() {
+        if (writeBehindQueue == null) {
+            writeBehindQueue = new WriteBehindQueue(this,
+                    daoConfig.getWriteBehindFlushSize(),
+                    daoConfig.getWriteBehindFlushDelay());
+        }
+        return writeBehindQueue;
+    }
+
     //*********************************************** operations ********************************************************
 
     @Override
@@ -124,8 +140,12 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 createTableIfNotExist(table);
-                for (Object item : entities) {
-                    saveOrUpdateWithoutTransaction(table, item);
+                if (table.getId().isAutoId()) {
+                    for (Object item : entities) {
+                        saveOrUpdateWithoutTransaction(table, item);
+                    }
+                } else {
+                    executeBatch(table, entities, SqlInfoBuilder.buildReplaceSql(table), false);
                 }
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
@@ -139,6 +159,28 @@ public final class DbManagerImpl extends DbBase {
         }
     }
 
+    @Override
+    public void upsert(Object entity) throws DbException {
+        if (!isUpsertSupported()) {
+            saveOrUpdate(entity);
+            return;
+        }
+
+        try {
+            beginTransaction();
+
+            List<?> entities = entity instanceof List ? (List<?>) entity : Collections.singletonList(entity);
+            if (entities.isEmpty()) return;
+            TableEntity<?> table = this.getTable(entities.get(0).getClass());
+            createTableIfNotExist(table);
+            executeUpsert(table, entities);
+
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+    }
+
     @Override
     public void replace(Object entity) throws DbException {
         try {
@@ -149,9 +191,7 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 createTableIfNotExist(table);
-                for (Object item : entities) {
-                    execNonQuery(SqlInfoBuilder.buildReplaceSqlInfo(table, item));
-                }
+                executeBatch(table, entities, SqlInfoBuilder.buildReplaceSql(table), false);
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
                 createTableIfNotExist(table);
@@ -174,9 +214,7 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 createTableIfNotExist(table);
-                for (Object item : entities) {
-                    execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, item));
-                }
+                executeBatch(table, entities, SqlInfoBuilder.buildInsertSql(table), false);
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
                 createTableIfNotExist(table);
@@ -200,11 +238,8 @@ public final class DbManagerImpl extends DbBase {
                 if (entities.isEmpty()) return false;
                 TableEntity<?> table = this.getTable(entities.get(0).getClass());
                 createTableIfNotExist(table);
-                for (Object item : entities) {
-                    if (!saveBindingIdWithoutTransaction(table, item)) {
-                        throw new DbException("saveBindingId error, transaction will not commit!");
-                    }
-                }
+                executeBatch(table, entities, SqlInfoBuilder.buildInsertSql(table), table.getId().isAutoId());
+                result = true;
             } else {
                 TableEntity<?> table = this.getTable(entity.getClass());
                 createTableIfNotExist(table);
@@ -399,6 +434,11 @@ public final class DbManagerImpl extends DbBase {
         return dbModelList;
     }
 
+    @Override
+    public void forEachDbModel(SqlInfo sqlInfo, ForEachCallback<DbModel> callback) throws DbException {
+        CursorUtils.forEachDbModel(execQuery(sqlInfo), callback);
+    }
+
     //******************************************** config ******************************************************
 
     private SQLiteDatabase openOrCreateDatabase(DaoConfig config) {
@@ -411,6 +451,23 @@ public final class DbManagerImpl extends DbBase {
         } else {
             result = x.app().openOrCreateDatabase(config.getDbName(), 0, null);
         }
+
+        // page_size 需要在开启WAL之前设置
+        if (config.getPageSize() > 0) {
+            result.setPageSize(config.getPageSize());
+        }
+        if (config.getCacheSize() != 0) {
+            result.execSQL("PRAGMA cache_size=" + config.getCacheSize());
+        }
+        if (config.getSqlCacheSize() > 0) {
+            result.setMaxSqlCacheSize(Math.min(config.getSqlCacheSize(), SQLiteDatabase.MAX_SQL_CACHE_SIZE));
+        }
+        if (config.isWriteAheadLoggingEnabled()) {
+            writeAheadLogging = result.enableWriteAheadLogging();
+            if (!writeAheadLogging) {
+                LogUtil.w("can not enable write-ahead logging: " + config);
+            }
+        }
         return result;
     }
 
@@ -431,12 +488,12 @@ public final class DbManagerImpl extends DbBase {
     private boolean saveBindingIdWithoutTransaction(TableEntity<?> table, Object entity) throws DbException {
         ColumnEntity id = table.getId();
         if (id.isAutoId()) {
-            execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, entity));
-            long idValue = getLastAutoIncrementId(table.getName());
+            // 自增id即rowid, 由executeInsert直接返回, 无需再查询sqlite_sequence.
+            long idValue = executeInsert(SqlInfoBuilder.buildInsertSqlInfo(table, entity));
             if (idValue == -1) {
                 return false;
             }
-            id.setAutoIdValue(entity, idValue);
+            setAutoIdValue(table, entity, idValue);
             return true;
         } else {
             execNonQuery(SqlInfoBuilder.buildInsertSqlInfo(table, entity));
@@ -444,27 +501,183 @@ public final class DbManagerImpl extends DbBase {
         }
     }
 
-    //************************************************ tools ***********************************
+    @SuppressWarnings("unchecked")
+    private void setAutoIdValue(TableEntity<?> table, Object entity, long idValue) {
+        EntityAdapter adapter = table.getEntityAdapter();
+        if (adapter != null) {
+            adapter.setAutoIdValue(entity, idValue);
+        } else {
+            table.getId().setAutoIdValue(entity, idValue);
+        }
+    }
 
-    private long getLastAutoIncrementId(String tableName) throws DbException {
-        long id = -1;
-        Cursor cursor = execQuery("SELECT seq FROM sqlite_sequence WHERE name='" + tableName + "' LIMIT 1");
-        if (cursor != null) {
+    /**
+     * 批量写入: statement只编译一次, 每行重新绑定参数后执行.
+     * 当 DaoConfig#getBatchSize() > 0 时, 每写入batchSize行提交一次事务.
+     *
+     * @param bindId 是否将executeInsert返回的rowid赋值给实体的自增id
+     */
+    private void executeBatch(TableEntity<?> table, List<?> entities, String sql, boolean bindId) throws DbException {
+        int batchSize = daoConfig.getBatchSize();
+        int size = entities.size();
+        long startTime = SystemClock.uptimeMillis();
+
+        SQLiteStatement statement = null;
+        try {
+            statement = database.compileStatement(sql);
+            for (int i = 0; i < size; i++) {
+                Object entity = entities.get(i);
+                SqlInfoBuilder.bindEntity(statement, table, entity);
+                if (bindId) {
+                    long idValue = statement.executeInsert();
+                    if (idValue == -1) {
+                        throw new DbException("saveBindingId error, transaction will not commit!");
+                    }
+                    setAutoIdValue(table, entity, idValue);
+                } else {
+                    statement.execute();
+                }
+                if (batchSize > 0 && (i + 1) % batchSize == 0 && i + 1 < size) {
+                    setTransactionSuccessful();
+                    endTransaction();
+                    beginTransaction();
+                }
+            }
+        } catch (DbException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new DbException(e);
+        } finally {
+            releaseStatement(statement);
+        }
+
+        onBatchWritten(table, size, startTime);
+    }
+
+    /**
+     * 批量upsert: 自增id为0的行使用INSERT并回填id, 其余行使用 INSERT ... ON CONFLICT DO UPDATE.
+     */
+    private void executeUpsert(TableEntity<?> table, List<?> entities) throws DbException {
+        int batchSize = daoConfig.getBatchSize();
+        int size = entities.size();
+        long startTime = SystemClock.uptimeMillis();
+
+        ColumnEntity id = table.getId();
+        boolean isAutoId = id.isAutoId();
+        int idIndex = table.getColumnMap().size();
+        SQLiteStatement upsertStatement = null;
+        SQLiteStatement insertStatement = null;
+        try {
+            upsertStatement = database.compileStatement(SqlInfoBuilder.buildUpsertSql(table));
+            for (int i = 0; i < size; i++) {
+                Object entity = entities.get(i);
+                Object idValue = id.getColumnValue(entity);
+                if (isAutoId && idValue == null) {
+                    if (insertStatement == null) {
+                        insertStatement = database.compileStatement(SqlInfoBuilder.buildInsertSql(table));
+                    }
+                    SqlInfoBuilder.bindEntity(insertStatement, table, entity);
+                    long newId = insertStatement.executeInsert();
+                    if (newId == -1) {
+                        throw new DbException("upsert error, transaction will not commit!");
+                    }
+                    setAutoIdValue(table, entity, newId);
+                } else {
+                    SqlInfoBuilder.bindEntity(upsertStatement, table, entity);
+                    if (isAutoId) {
+                        SqlInfo.bindArg(upsertStatement, idIndex, idValue);
+                    }
+                    upsertStatement.execute();
+                }
+                if (batchSize > 0 && (i + 1) % batchSize == 0 && i + 1 < size) {
+                    setTransactionSuccessful();
+                    endTransaction();
+                    beginTransaction();
+                }
+            }
+        } catch (DbException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new DbException(e);
+        } finally {
+            releaseStatement(upsertStatement);
+            releaseStatement(insertStatement);
+        }
+
+        onBatchWritten(table, size, startTime);
+    }
+
+    private void onBatchWritten(TableEntity<?> table, int size, long startTime) {
+        long cost = SystemClock.uptimeMillis() - startTime;
+        LogUtil.d("batch write " + table.getName() + ": " + size + " rows, "
+                + (cost > 0 ? size * 1000L / cost : size) + " rows/sec");
+        BatchWriteListener listener = daoConfig.getBatchWriteListener();
+        if (listener != null) {
+            listener.onBatchWritten(this, table, size, cost);
+        }
+    }
+
+    private static void releaseStatement(SQLiteStatement statement) {
+        if (statement != null) {
+            try {
+                statement.releaseReference();
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * ON CONFLICT ... DO UPDATE 需要sqlite 3.24+
+     */
+    private boolean isUpsertSupported() {
+        if (upsertSupported == null) {
+            boolean supported = false;
+            Cursor cursor = null;
             try {
+                cursor = database.rawQuery("SELECT sqlite_version()", null);
                 if (cursor.moveToNext()) {
-                    id = cursor.getLong(0);
+                    String[] versions = cursor.getString(0).split("\\.");
+                    int major = Integer.parseInt(versions[0]);
+                    int minor = versions.length > 1 ? Integer.parseInt(versions[1]) : 0;
+                    supported = major > 3 || (major == 3 && minor >= 24);
                 }
-            } catch (Throwable e) {
-                throw new DbException(e);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
             } finally {
                 IOUtil.closeQuietly(cursor);
             }
+            if (!supported) {
+                LogUtil.w("upsert not supported, fallback to saveOrUpdate: " + daoConfig);
+            }
+            upsertSupported = supported;
+        }
+        return upsertSupported;
+    }
+
+    //************************************************ tools ***********************************
+
+    /**
+     * 在一个事务中执行一组写操作, 供 WriteBehindQueue 使用.
+     */
+    /*package*/ void executeInTransaction(WriteOperation operation) throws DbException {
+        try {
+            beginTransaction();
+            operation.execute(this);
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
         }
-        return id;
     }
 
     @Override
     public void close() throws IOException {
+        synchronized (this) {
+            if (writeBehindQueue != null) {
+                writeBehindQueue.close();
+                writeBehindQueue = null;
+            }
+        }
         if (DAO_MAP.containsKey(daoConfig)) {
             DAO_MAP.remove(daoConfig);
             this.database.close();
@@ -475,7 +688,12 @@ public final class DbManagerImpl extends DbBase {
 
     private void beginTransaction() {
         if (allowTransaction) {
-            database.beginTransaction();
+            if (writeAheadLogging) {
+                // WAL模式下使用IMMEDIATE事务, 不阻塞其他连接的读操作
+                database.beginTransactionNonExclusive();
+            } else {
+                database.beginTransaction();
+            }
         }
     }
 
@@ -530,6 +748,27 @@ public final class DbManagerImpl extends DbBase {
         }
     }
 
+    /**
+     * @return 新插入行的rowid, 失败时返回-1
+     */
+    private long executeInsert(SqlInfo sqlInfo) throws DbException {
+        SQLiteStatement statement = null;
+        try {
+            statement = sqlInfo.buildStatement(database);
+            return statement.executeInsert();
+        } catch (Throwable e) {
+            throw new DbException(e);
+        } finally {
+            if (statement != null) {
+                try {
+                    statement.releaseReference();
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
+                }
+            }
+        }
+    }
+
     @Override
     public void execNonQuery(SqlInfo sqlInfo) throws DbException {
         SQLiteStatement statement = null;
@@ -18,6 +18,7 @@ package org.xutils.db;
 import android.database.Cursor;
 import android.text.TextUtils;
 
+import org.xutils.DbManager.ForEachCallback;
 import org.xutils.common.util.IOUtil;
 import org.xutils.db.sqlite.WhereBuilder;
 import org.xutils.db.table.DbModel;
@@ -176,6 +177,17 @@ public final class DbModelSelector {
         return result;
     }
 
+    /**
+     * 逐行回调查询结果, callback返回false时停止遍历.
+     */
+    public void forEach(ForEachCallback<DbModel> callback) throws DbException {
+        TableEntity<?> table = selector.getTable();
+        if (!table.tableIsExist()) return;
+
+        Cursor cursor = table.getDb().execQuery(this.toString());
+        CursorUtils.forEachDbModel(cursor, callback);
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
@@ -0,0 +1,153 @@
+package org.xutils.db;
+
+import android.database.Cursor;
+
+import org.xutils.common.util.IOUtil;
+import org.xutils.db.table.ColumnEntity;
+import org.xutils.db.table.EntityAdapter;
+import org.xutils.db.table.TableEntity;
+import org.xutils.ex.DbException;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 逐行读取查询结果, 不会一次性把所有实体加载到内存.
+ * 遍历结束或出错时自动关闭cursor, 中途放弃遍历时需调用 close().
+ * <p/>
+ * reuseEntity为true时每次 next() 返回同一个实体对象(只更新它的列值),
+ * 调用者不应持有它的引用.
+ */
+public final class EntityIterator<T> implements Iterator<T>, Closeable {
+
+    private final TableEntity<T> table;
+    private final Cursor cursor;
+    private final boolean reuseEntity;
+
+    private EntityAdapter<T> adapter;
+    private int[] adapterColumnIndexes;
+    private ColumnEntity[] cursorColumns; // cursor中每一列对应的ColumnEntity
+
+    private T entity;
+    private Object[] defaultValues; // 新建实体的列值, 复用实体时用于还原值为null的列
+
+    private boolean moved;
+    private boolean hasNext;
+    private boolean closed;
+
+    /*package*/ EntityIterator(TableEntity<T> table, Cursor cursor, boolean reuseEntity) {
+        this.table = table;
+        this.cursor = cursor;
+        this.reuseEntity = reuseEntity;
+        if (cursor == null) {
+            closed = true;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!moved) {
+            moved = true;
+            hasNext = !closed && cursor.moveToNext();
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    /**
+     * @throws RuntimeException 读取出错时抛出, cause为DbException
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        moved = false;
+        try {
+            return readEntity();
+        } catch (Throwable ex) {
+            close();
+            throw new RuntimeException(new DbException(ex));
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            IOUtil.closeQuietly(cursor);
+        }
+    }
+
+    private T readEntity() throws Throwable {
+        if (cursorColumns == null) {
+            initColumns();
+        }
+
+        T result;
+        if (reuseEntity) {
+            if (entity == null) {
+                entity = table.createEntity();
+                defaultValues = new Object[cursorColumns.length];
+                for (int i = 0; i < cursorColumns.length; i++) {
+                    if (cursorColumns[i] != null) {
+                        defaultValues[i] = cursorColumns[i].getFieldValue(entity);
+                    }
+                }
+            }
+            result = entity;
+        } else {
+            result = table.createEntity();
+        }
+
+        if (adapter != null) {
+            adapter.readCursor(result, cursor, adapterColumnIndexes);
+            if (reuseEntity) {
+                resetNullColumns(result);
+            }
+        } else {
+            for (int i = 0; i < cursorColumns.length; i++) {
+                ColumnEntity column = cursorColumns[i];
+                if (column != null) {
+                    if (reuseEntity && cursor.isNull(i)) {
+                        column.setFieldValue(result, defaultValues[i]);
+                    } else {
+                        column.setValueFromCursor(result, cursor, i);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void initColumns() {
+        HashMap<String, ColumnEntity> columnMap = table.getColumnMap();
+        int columnCount = cursor.getColumnCount();
+        cursorColumns = new ColumnEntity[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            cursorColumns[i] = columnMap.get(cursor.getColumnName(i));
+        }
+
+        adapter = table.getEntityAdapter();
+        if (adapter != null) {
+            adapterColumnIndexes = CursorUtils.getColumnIndexes(adapter, cursor);
+        }
+    }
+
+    private void resetNullColumns(T result) {
+        for (int i = 0; i < cursorColumns.length; i++) {
+            if (cursorColumns[i] != null && cursor.isNull(i)) {
+                cursorColumns[i].setFieldValue(result, defaultValues[i]);
+            }
+        }
+    }
+}
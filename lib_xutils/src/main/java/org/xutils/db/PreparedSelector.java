@@ -0,0 +1,115 @@
+package org.xutils.db;
+
+import android.database.Cursor;
+
+import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.KeyValue;
+import org.xutils.db.sqlite.SqlInfo;
+import org.xutils.db.table.EntityAdapter;
+import org.xutils.db.table.TableEntity;
+import org.xutils.ex.DbException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的查询, 由 Selector#prepare() 创建, 可重复使用.
+ * sql只生成一次, 条件中的 WhereBuilder.ARG 在执行时按位置绑定参数,
+ * 相同的sql会命中数据库连接中已编译的statement(缓存大小见 DaoConfig#setSqlCacheSize).
+ * <p/>
+ * 参数不能为null, 判断null请使用 "IS NULL" 条件.
+ */
+public final class PreparedSelector<T> {
+
+    private final TableEntity<T> table;
+    private final String sql;
+    private final String firstSql;
+
+    /*package*/ PreparedSelector(TableEntity<T> table, String sql, boolean hasLimit) {
+        this.table = table;
+        this.sql = sql;
+        this.firstSql = hasLimit ? sql : sql + " LIMIT 1";
+    }
+
+    public T findFirst(Object... args) throws DbException {
+        if (!table.tableIsExist()) return null;
+
+        Cursor cursor = table.getDb().execQuery(buildSqlInfo(firstSql, args));
+        if (cursor != null) {
+            try {
+                if (cursor.moveToNext()) {
+                    return CursorUtils.getEntity(table, cursor);
+                }
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtil.closeQuietly(cursor);
+            }
+        }
+        return null;
+    }
+
+    public List<T> findAll(Object... args) throws DbException {
+        if (!table.tableIsExist()) return null;
+
+        List<T> result = null;
+        Cursor cursor = table.getDb().execQuery(buildSqlInfo(sql, args));
+        if (cursor != null) {
+            try {
+                result = new ArrayList<T>();
+                EntityAdapter<T> adapter = table.getEntityAdapter();
+                if (adapter != null) {
+                    int[] columnIndexes = CursorUtils.getColumnIndexes(adapter, cursor);
+                    while (cursor.moveToNext()) {
+                        result.add(CursorUtils.getEntity(adapter, cursor, columnIndexes));
+                    }
+                } else {
+                    while (cursor.moveToNext()) {
+                        result.add(CursorUtils.getEntity(table, cursor));
+                    }
+                }
+            } catch (Throwable e) {
+                throw new DbException(e);
+            } finally {
+                IOUtil.closeQuietly(cursor);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 逐行读取查询结果, 使用完毕(或中途放弃)时需调用 EntityIterator#close().
+     */
+    public EntityIterator<T> iterate(boolean reuseEntity, Object... args) throws DbException {
+        if (!table.tableIsExist()) return new EntityIterator<T>(table, null, reuseEntity);
+
+        Cursor cursor = table.getDb().execQuery(buildSqlInfo(sql, args));
+        return new EntityIterator<T>(table, cursor, reuseEntity);
+    }
+
+    public TableEntity<T> getTable() {
+        return table;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    private static SqlInfo buildSqlInfo(String sql, Object[] args) {
+        SqlInfo result = new SqlInfo(sql);
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg == null) {
+                    throw new IllegalArgumentException("bind arg may not be null");
+                }
+                result.addBindArg(new KeyValue(null, arg));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
@@ -17,9 +17,13 @@ package org.xutils.db;
 
 import android.database.Cursor;
 
+import org.xutils.DbManager.ForEachCallback;
 import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
+import org.xutils.db.sqlite.SqlInfo;
 import org.xutils.db.sqlite.WhereBuilder;
 import org.xutils.db.table.DbModel;
+import org.xutils.db.table.EntityAdapter;
 import org.xutils.db.table.TableEntity;
 import org.xutils.ex.DbException;
 
@@ -141,6 +145,18 @@ public final class Selector<T> {
         return offset;
     }
 
+    /**
+     * 生成可重复使用的查询, 条件的值使用 WhereBuilder.ARG 占位,
+     * 执行时按位置传入参数, 例如:
+     * <pre>
+     * PreparedSelector&lt;User&gt; byName = db.selector(User.class).where("name", "=", WhereBuilder.ARG).prepare();
+     * User user = byName.findFirst("xutils");
+     * </pre>
+     */
+    public PreparedSelector<T> prepare() {
+        return new PreparedSelector<T>(table, this.toString(), limit > 0);
+    }
+
     public T findFirst() throws DbException {
         if (!table.tableIsExist()) return null;
 
@@ -168,9 +184,17 @@ public final class Selector<T> {
         if (cursor != null) {
             try {
                 result = new ArrayList<T>();
-                while (cursor.moveToNext()) {
-                    T entity = CursorUtils.getEntity(table, cursor);
-                    result.add(entity);
+                EntityAdapter<T> adapter = table.getEntityAdapter();
+                if (adapter != null) {
+                    int[] columnIndexes = CursorUtils.getColumnIndexes(adapter, cursor);
+                    while (cursor.moveToNext()) {
+                        result.add(CursorUtils.getEntity(adapter, cursor, columnIndexes));
+                    }
+                } else {
+                    while (cursor.moveToNext()) {
+                        T entity = CursorUtils.getEntity(table, cursor);
+                        result.add(entity);
+                    }
                 }
             } catch (Throwable e) {
                 throw new DbException(e);
@@ -181,6 +205,50 @@ public final class Selector<T> {
         return result;
     }
 
+    /**
+     * 逐行读取查询结果, 使用完毕(或中途放弃)时需调用 EntityIterator#close().
+     */
+    public EntityIterator<T> iterate() throws DbException {
+        return iterate(false);
+    }
+
+    /**
+     * @param reuseEntity 为true时每一行都读入同一个实体对象
+     */
+    public EntityIterator<T> iterate(boolean reuseEntity) throws DbException {
+        if (!table.tableIsExist()) return new EntityIterator<T>(table, null, reuseEntity);
+
+        Cursor cursor = table.getDb().execQuery(this.toString());
+        return new EntityIterator<T>(table, cursor, reuseEntity);
+    }
+
+    public void forEach(ForEachCallback<T> callback) throws DbException {
+        forEach(callback, false);
+    }
+
+    /**
+     * 逐行回调查询结果, callback返回false时停止遍历.
+     *
+     * @param reuseEntity 为true时每一行都读入同一个实体对象, callback中不应持有它的引用.
+     */
+    public void forEach(ForEachCallback<T> callback, boolean reuseEntity) throws DbException {
+        EntityIterator<T> iterator = iterate(reuseEntity);
+        try {
+            while (iterator.hasNext()) {
+                if (!callback.onEach(iterator.next())) {
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            if (ex.getCause() instanceof DbException) {
+                throw (DbException) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            iterator.close();
+        }
+    }
+
     public long count() throws DbException {
         if (!table.tableIsExist()) return 0;
 
@@ -192,6 +260,22 @@ public final class Selector<T> {
         return 0;
     }
 
+    /**
+     * 输出当前查询的执行计划, 用于确认是否命中索引.
+     */
+    public List<DbModel> explainQueryPlan() throws DbException {
+        if (!table.tableIsExist()) return null;
+
+        List<DbModel> result = table.getDb().findDbModelAll(
+                new SqlInfo("EXPLAIN QUERY PLAN " + this.toString()));
+        if (result != null) {
+            for (DbModel model : result) {
+                LogUtil.d("query plan: " + model.getString("detail"));
+            }
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         StringBuilder result = new StringBuilder();
@@ -0,0 +1,345 @@
+package org.xutils.db;
+
+import android.os.SystemClock;
+
+import org.xutils.DbManager;
+import org.xutils.DbManager.WriteOperation;
+import org.xutils.common.Callback;
+import org.xutils.common.util.LogUtil;
+import org.xutils.ex.DbException;
+import org.xutils.x;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步写入队列.
+ * 多个线程提交的写操作由一个后台线程合并执行,
+ * 每凑满 flushSize 个写操作或第一个写操作等待超过 flushDelay 毫秒时在一个事务中提交.
+ * 回调在UI线程执行.
+ */
+public final class WriteBehindQueue implements Closeable {
+
+    private final DbManagerImpl db;
+    private final int flushSize;
+    private final long flushDelay;
+    private final LinkedBlockingQueue<WriteTask> queue = new LinkedBlockingQueue<WriteTask>();
+
+    private Thread worker;
+    private volatile boolean closed = false;
+    private volatile WriteTask stopMarker;
+
+    /*package*/ WriteBehindQueue(DbManagerImpl db, int flushSize, long flushDelay) {
+        this.db = db;
+        this.flushSize = flushSize > 0 ? flushSize : 1;
+        this.flushDelay = flushDelay > 0 ? flushDelay : 0;
+    }
+
+    public Callback.Cancelable save(final Object entity, Callback.CommonCallback<Void> callback) {
+        return submit(new WriteOperation() {
+            @Override
+            public void execute(DbManager db) throws DbException {
+                db.save(entity);
+            }
+        }, callback);
+    }
+
+    public Callback.Cancelable saveOrUpdate(final Object entity, Callback.CommonCallback<Void> callback) {
+        return submit(new WriteOperation() {
+            @Override
+            public void execute(DbManager db) throws DbException {
+                db.saveOrUpdate(entity);
+            }
+        }, callback);
+    }
+
+    public Callback.Cancelable replace(final Object entity, Callback.CommonCallback<Void> callback) {
+        return submit(new WriteOperation() {
+            @Override
+            public void execute(DbManager db) throws DbException {
+                db.replace(entity);
+            }
+        }, callback);
+    }
+
+    public Callback.Cancelable update(final Object entity, Callback.CommonCallback<Void> callback,
+                                      final String... updateColumnNames) {
+        return submit(new WriteOperation() {
+            @Override
+            public void execute(DbManager db) throws DbException {
+                db.update(entity, updateColumnNames);
+            }
+        }, callback);
+    }
+
+    public Callback.Cancelable delete(final Object entity, Callback.CommonCallback<Void> callback) {
+        return submit(new WriteOperation() {
+            @Override
+            public void execute(DbManager db) throws DbException {
+                db.delete(entity);
+            }
+        }, callback);
+    }
+
+    /**
+     * 提交一个写操作
+     *
+     * @param operation
+     * @param callback  可以为null
+     * @return
+     */
+    public Callback.Cancelable submit(WriteOperation operation, Callback.CommonCallback<Void> callback) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation may not be null");
+        }
+        WriteTask task = new WriteTask(operation, callback);
+        enqueue(task);
+        return task;
+    }
+
+    /**
+     * 立即提交队列中的写操作, 并等待它们执行完成.
+     */
+    public void flush() {
+        WriteTask marker = new WriteTask(null, null);
+        enqueue(marker);
+        marker.await();
+    }
+
+    /**
+     * 提交队列中剩余的写操作并停止后台线程.
+     */
+    @Override
+    public void close() {
+        WriteTask marker;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (worker == null) return;
+            // 在锁内加入队列, 之后不会再有任务排在stopMarker后面
+            marker = new WriteTask(null, null);
+            stopMarker = marker;
+            queue.offer(marker);
+        }
+        marker.await();
+    }
+
+    private void enqueue(WriteTask task) {
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("WriteBehindQueue closed: " + db.getDaoConfig());
+            }
+            if (worker == null) {
+                worker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        loop();
+                    }
+                }, "xUtils-db-writer");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            // 与close()检查closed使用同一个锁, 避免任务排在stopMarker之后被丢弃
+            queue.offer(task);
+        }
+    }
+
+    private void loop() {
+        List<WriteTask> batch = new ArrayList<WriteTask>(flushSize);
+        List<WriteTask> markers = new ArrayList<WriteTask>(1);
+        while (true) {
+            try {
+                WriteTask first = queue.take();
+                addTask(first, batch, markers);
+                long deadline = SystemClock.uptimeMillis() + flushDelay;
+                while (batch.size() < flushSize && markers.isEmpty()) {
+                    long wait = deadline - SystemClock.uptimeMillis();
+                    WriteTask task = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (task == null) break;
+                    addTask(task, batch, markers);
+                }
+            } catch (InterruptedException ignored) {
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+            boolean stop = false;
+            for (WriteTask marker : markers) {
+                stop |= marker == stopMarker;
+                marker.countDown();
+            }
+            markers.clear();
+
+            if (stop) {
+                failRemaining();
+                break;
+            }
+        }
+    }
+
+    /**
+     * 后台线程停止后, 队列中剩余的任务不再执行, 通知等待者, 避免回调丢失或flush()一直等待.
+     */
+    private void failRemaining() {
+        WriteTask task;
+        while ((task = queue.poll()) != null) {
+            if (task.operation == null) {
+                task.countDown();
+            } else if (task.start()) {
+                task.onError(new IllegalStateException("WriteBehindQueue closed: " + db.getDaoConfig()));
+            }
+        }
+    }
+
+    private static void addTask(WriteTask task, List<WriteTask> batch, List<WriteTask> markers) {
+        if (task.operation == null) {
+            markers.add(task);
+        } else {
+            batch.add(task);
+        }
+    }
+
+    private void writeBatch(final List<WriteTask> batch) {
+        final List<WriteTask> runningList = new ArrayList<WriteTask>(batch.size());
+        for (WriteTask task : batch) {
+            if (task.start()) {
+                runningList.add(task);
+            }
+        }
+        if (runningList.isEmpty()) return;
+
+        long startTime = SystemClock.uptimeMillis();
+        try {
+            db.executeInTransaction(new WriteOperation() {
+                @Override
+                public void execute(DbManager db) throws DbException {
+                    for (WriteTask task : runningList) {
+                        task.operation.execute(db);
+                    }
+                }
+            });
+            for (WriteTask task : runningList) {
+                task.onSuccess();
+            }
+            LogUtil.d("write behind: " + runningList.size() + " operations, "
+                    + (SystemClock.uptimeMillis() - startTime) + "ms");
+        } catch (Throwable ex) {
+            if (runningList.size() == 1) {
+                runningList.get(0).onError(ex);
+                return;
+            }
+            // 整个事务已回滚, 逐个重新执行, 避免一个失败的写操作导致其他写操作丢失
+            LogUtil.w("write behind batch failed, retry one by one", ex);
+            for (WriteTask task : runningList) {
+                try {
+                    db.executeInTransaction(task.operation);
+                    task.onSuccess();
+                } catch (Throwable taskEx) {
+                    task.onError(taskEx);
+                }
+            }
+        }
+    }
+
+    private static final class WriteTask implements Callback.Cancelable {
+
+        private static final int STATE_WAITING = 0;
+        private static final int STATE_STARTED = 1;
+        private static final int STATE_CANCELLED = 2;
+
+        private final WriteOperation operation;
+        private final Callback.CommonCallback<Void> callback;
+        private final AtomicInteger state = new AtomicInteger(STATE_WAITING);
+        private final CountDownLatch latch;
+
+        public WriteTask(WriteOperation operation, Callback.CommonCallback<Void> callback) {
+            this.operation = operation;
+            this.callback = callback;
+            this.latch = operation == null ? new CountDownLatch(1) : null;
+        }
+
+        /**
+         * 开始执行前调用, 已取消时返回false
+         */
+        public boolean start() {
+            return state.compareAndSet(STATE_WAITING, STATE_STARTED);
+        }
+
+        @Override
+        public void cancel() {
+            if (state.compareAndSet(STATE_WAITING, STATE_CANCELLED) && callback != null) {
+                x.task().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            callback.onCancelled(new Callback.CancelledException("cancelled by user"));
+                        } catch (Throwable ex) {
+                            LogUtil.e(ex.getMessage(), ex);
+                        } finally {
+                            callback.onFinished();
+                        }
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public void onSuccess() {
+            if (callback == null) return;
+            x.task().post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.onSuccess(null);
+                    } catch (Throwable ex) {
+                        callback.onError(ex, true);
+                    } finally {
+                        callback.onFinished();
+                    }
+                }
+            });
+        }
+
+        public void onError(final Throwable ex) {
+            if (callback == null) {
+                LogUtil.e(ex.getMessage(), ex);
+                return;
+            }
+            x.task().post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.onError(ex, false);
+                    } catch (Throwable cbEx) {
+                        LogUtil.e(cbEx.getMessage(), cbEx);
+                    } finally {
+                        callback.onFinished();
+                    }
+                }
+            });
+        }
+
+        public void await() {
+            try {
+                latch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public void countDown() {
+            latch.countDown();
+        }
+    }
+}
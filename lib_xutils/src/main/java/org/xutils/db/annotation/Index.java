@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xutils.db.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 索引声明, 在建表和升级时自动创建(CREATE INDEX IF NOT EXISTS).
+ * <p/>
+ * 1. 单列索引: 标注在 @Column 字段上, columns 留空.
+ * 2. 组合索引: 声明在 @Table(indexes = {@Index(columns = {"a", "b"})}) 中.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Index {
+
+    /**
+     * 索引名, 默认为: "index_" + 表名 + "_" + 列名(以"_"连接)
+     */
+    String name() default "";
+
+    /**
+     * 组合索引的列名, 标注在字段上时忽略.
+     */
+    String[] columns() default {};
+
+    boolean unique() default false;
+}
@@ -27,4 +27,9 @@ public @interface Table {
     String name();
 
     String onCreated() default "";
+
+    /**
+     * 组合索引
+     */
+    Index[] indexes() default {};
 }
\ No newline at end of file
@@ -1,15 +1,18 @@
 package org.xutils.db.converter;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import org.xutils.db.sqlite.ColumnDbType;
 
+import java.lang.reflect.Field;
+
 /**
  * Author: wyouflf
  * Date: 13-11-4
  * Time: 下午10:51
  */
-public class BooleanColumnConverter implements ColumnConverter<Boolean> {
+public class BooleanColumnConverter implements ColumnConverter<Boolean>, PrimitiveColumnConverter {
     @Override
     public Boolean getFieldValue(final Cursor cursor, int index) {
         return cursor.isNull(index) ? null : cursor.getInt(index) == 1;
@@ -25,4 +28,16 @@ public class BooleanColumnConverter implements ColumnConverter<Boolean> {
     public ColumnDbType getColumnDbType() {
         return ColumnDbType.INTEGER;
     }
+
+    @Override
+    public void readField(Object entity, Field field, final Cursor cursor, int index) throws IllegalAccessException {
+        if (!cursor.isNull(index)) {
+            field.setBoolean(entity, cursor.getInt(index) == 1);
+        }
+    }
+
+    @Override
+    public void bindField(Object entity, Field field, SQLiteStatement statement, int index) throws IllegalAccessException {
+        statement.bindLong(index, field.getBoolean(entity) ? 1 : 0);
+    }
 }
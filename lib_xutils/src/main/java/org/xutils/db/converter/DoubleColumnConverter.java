@@ -1,15 +1,18 @@
 package org.xutils.db.converter;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import org.xutils.db.sqlite.ColumnDbType;
 
+import java.lang.reflect.Field;
+
 /**
  * Author: wyouflf
  * Date: 13-11-4
  * Time: 下午10:51
  */
-public class DoubleColumnConverter implements ColumnConverter<Double> {
+public class DoubleColumnConverter implements ColumnConverter<Double>, PrimitiveColumnConverter {
     @Override
     public Double getFieldValue(final Cursor cursor, int index) {
         return cursor.isNull(index) ? null : cursor.getDouble(index);
@@ -24,4 +27,16 @@ public class DoubleColumnConverter implements ColumnConverter<Double> {
     public ColumnDbType getColumnDbType() {
         return ColumnDbType.REAL;
     }
+
+    @Override
+    public void readField(Object entity, Field field, final Cursor cursor, int index) throws IllegalAccessException {
+        if (!cursor.isNull(index)) {
+            field.setDouble(entity, cursor.getDouble(index));
+        }
+    }
+
+    @Override
+    public void bindField(Object entity, Field field, SQLiteStatement statement, int index) throws IllegalAccessException {
+        statement.bindDouble(index, field.getDouble(entity));
+    }
 }
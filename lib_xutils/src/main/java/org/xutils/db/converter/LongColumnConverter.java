@@ -1,15 +1,18 @@
 package org.xutils.db.converter;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import org.xutils.db.sqlite.ColumnDbType;
 
+import java.lang.reflect.Field;
+
 /**
  * Author: wyouflf
  * Date: 13-11-4
  * Time: 下午10:51
  */
-public class LongColumnConverter implements ColumnConverter<Long> {
+public class LongColumnConverter implements ColumnConverter<Long>, PrimitiveColumnConverter {
     @Override
     public Long getFieldValue(final Cursor cursor, int index) {
         return cursor.isNull(index) ? null : cursor.getLong(index);
@@ -24,4 +27,16 @@ public class LongColumnConverter implements ColumnConverter<Long> {
     public ColumnDbType getColumnDbType() {
         return ColumnDbType.INTEGER;
     }
+
+    @Override
+    public void readField(Object entity, Field field, final Cursor cursor, int index) throws IllegalAccessException {
+        if (!cursor.isNull(index)) {
+            field.setLong(entity, cursor.getLong(index));
+        }
+    }
+
+    @Override
+    public void bindField(Object entity, Field field, SQLiteStatement statement, int index) throws IllegalAccessException {
+        statement.bindLong(index, field.getLong(entity));
+    }
 }
@@ -0,0 +1,25 @@
+package org.xutils.db.converter;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import java.lang.reflect.Field;
+
+/**
+ * 基本类型(int, long, double, boolean)列的转换器,
+ * 直接在 Cursor/SQLiteStatement 与实体字段之间读写, 不产生装箱对象.
+ */
+public interface PrimitiveColumnConverter {
+
+    /**
+     * 读取cursor中的值并写入实体字段, 值为NULL时保持字段原值.
+     */
+    void readField(Object entity, Field field, final Cursor cursor, int index) throws IllegalAccessException;
+
+    /**
+     * 读取实体字段并绑定到statement
+     *
+     * @param index 从1开始
+     */
+    void bindField(Object entity, Field field, SQLiteStatement statement, int index) throws IllegalAccessException;
+}
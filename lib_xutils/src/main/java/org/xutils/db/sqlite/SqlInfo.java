@@ -66,35 +66,46 @@ public final class SqlInfo {
         if (bindArgs != null) {
             for (int i = 1; i < bindArgs.size() + 1; i++) {
                 KeyValue kv = bindArgs.get(i - 1);
-                Object value = ColumnUtils.convert2DbValueIfNeeded(kv.value);
-                if (value == null) {
-                    result.bindNull(i);
-                } else {
-                    ColumnConverter converter = ColumnConverterFactory.getColumnConverter(value.getClass());
-                    ColumnDbType type = converter.getColumnDbType();
-                    switch (type) {
-                        case INTEGER:
-                            result.bindLong(i, ((Number) value).longValue());
-                            break;
-                        case REAL:
-                            result.bindDouble(i, ((Number) value).doubleValue());
-                            break;
-                        case TEXT:
-                            result.bindString(i, value.toString());
-                            break;
-                        case BLOB:
-                            result.bindBlob(i, (byte[]) value);
-                            break;
-                        default:
-                            result.bindNull(i);
-                            break;
-                    } // end switch
-                }
+                bindArg(result, i, kv.value);
             }
         }
         return result;
     }
 
+    /**
+     * 绑定参数到已编译的statement, 供批量操作重复使用同一个statement.
+     *
+     * @param statement
+     * @param index     从1开始
+     * @param fieldValue
+     */
+    public static void bindArg(SQLiteStatement statement, int index, Object fieldValue) {
+        Object value = ColumnUtils.convert2DbValueIfNeeded(fieldValue);
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            ColumnConverter converter = ColumnConverterFactory.getColumnConverter(value.getClass());
+            ColumnDbType type = converter.getColumnDbType();
+            switch (type) {
+                case INTEGER:
+                    statement.bindLong(index, ((Number) value).longValue());
+                    break;
+                case REAL:
+                    statement.bindDouble(index, ((Number) value).doubleValue());
+                    break;
+                case TEXT:
+                    statement.bindString(index, value.toString());
+                    break;
+                case BLOB:
+                    statement.bindBlob(index, (byte[]) value);
+                    break;
+                default:
+                    statement.bindNull(index);
+                    break;
+            } // end switch
+        }
+    }
+
     public Object[] getBindArgs() {
         Object[] result = null;
         if (bindArgs != null) {
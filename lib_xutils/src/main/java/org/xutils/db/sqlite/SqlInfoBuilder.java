@@ -15,8 +15,12 @@
 
 package org.xutils.db.sqlite;
 
+import android.database.sqlite.SQLiteStatement;
+
 import org.xutils.common.util.KeyValue;
 import org.xutils.db.table.ColumnEntity;
+import org.xutils.db.table.EntityAdapter;
+import org.xutils.db.table.IndexEntity;
 import org.xutils.db.table.TableEntity;
 import org.xutils.ex.DbException;
 
@@ -35,6 +39,7 @@ public final class SqlInfoBuilder {
 
     private static final ConcurrentHashMap<TableEntity<?>, String> INSERT_SQL_CACHE = new ConcurrentHashMap<TableEntity<?>, String>();
     private static final ConcurrentHashMap<TableEntity<?>, String> REPLACE_SQL_CACHE = new ConcurrentHashMap<TableEntity<?>, String>();
+    private static final ConcurrentHashMap<TableEntity<?>, String> UPSERT_SQL_CACHE = new ConcurrentHashMap<TableEntity<?>, String>();
 
     private SqlInfoBuilder() {
     }
@@ -47,35 +52,21 @@ public final class SqlInfoBuilder {
         if (keyValueList.size() == 0) return null;
 
         SqlInfo result = new SqlInfo();
+        result.setSql(buildInsertSql(table));
+        result.addBindArgs(keyValueList);
+        return result;
+    }
+
+    /**
+     * 获取表的 INSERT 语句(参数使用?占位), 参数顺序与 {@link #bindEntity} 一致.
+     */
+    public static String buildInsertSql(TableEntity<?> table) {
         String sql = INSERT_SQL_CACHE.get(table);
         if (sql == null) {
-            StringBuilder builder = new StringBuilder();
-            builder.append("INSERT INTO ");
-            builder.append("\"").append(table.getName()).append("\"");
-            builder.append(" (");
-            for (KeyValue kv : keyValueList) {
-                builder.append("\"").append(kv.key).append("\"").append(',');
-            }
-            builder.deleteCharAt(builder.length() - 1);
-            builder.append(") VALUES (");
-
-            int length = keyValueList.size();
-            for (int i = 0; i < length; i++) {
-                builder.append("?,");
-            }
-            builder.deleteCharAt(builder.length() - 1);
-            builder.append(")");
-
-            sql = builder.toString();
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
+            sql = buildInsertOrReplaceSql("INSERT INTO ", table);
             INSERT_SQL_CACHE.put(table, sql);
-        } else {
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
         }
-
-        return result;
+        return sql;
     }
 
     //*********************************************** replace sql ***********************************************
@@ -86,35 +77,116 @@ public final class SqlInfoBuilder {
         if (keyValueList.size() == 0) return null;
 
         SqlInfo result = new SqlInfo();
+        result.setSql(buildReplaceSql(table));
+        result.addBindArgs(keyValueList);
+        return result;
+    }
+
+    /**
+     * 获取表的 REPLACE 语句(参数使用?占位), 参数顺序与 {@link #bindEntity} 一致.
+     */
+    public static String buildReplaceSql(TableEntity<?> table) {
         String sql = REPLACE_SQL_CACHE.get(table);
         if (sql == null) {
+            sql = buildInsertOrReplaceSql("REPLACE INTO ", table);
+            REPLACE_SQL_CACHE.put(table, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * 获取表的 UPSERT 语句(sqlite 3.24+), 参数顺序与 {@link #bindEntity} 一致,
+     * 自增id列放在最后一个参数.
+     */
+    public static String buildUpsertSql(TableEntity<?> table) {
+        String sql = UPSERT_SQL_CACHE.get(table);
+        if (sql == null) {
+            ColumnEntity id = table.getId();
             StringBuilder builder = new StringBuilder();
-            builder.append("REPLACE INTO ");
+            builder.append("INSERT INTO ");
             builder.append("\"").append(table.getName()).append("\"");
             builder.append(" (");
-            for (KeyValue kv : keyValueList) {
-                builder.append("\"").append(kv.key).append("\"").append(',');
+            int length = 0;
+            Collection<ColumnEntity> columns = table.getColumnMap().values();
+            for (ColumnEntity column : columns) {
+                if (column.isAutoId()) continue;
+                builder.append("\"").append(column.getName()).append("\"").append(',');
+                length++;
+            }
+            if (id.isAutoId()) {
+                builder.append("\"").append(id.getName()).append("\"").append(',');
+                length++;
             }
             builder.deleteCharAt(builder.length() - 1);
             builder.append(") VALUES (");
-
-            int length = keyValueList.size();
             for (int i = 0; i < length; i++) {
                 builder.append("?,");
             }
             builder.deleteCharAt(builder.length() - 1);
             builder.append(")");
 
+            builder.append(" ON CONFLICT(\"").append(id.getName()).append("\")");
+            StringBuilder setBuilder = new StringBuilder();
+            for (ColumnEntity column : columns) {
+                if (column.isId()) continue;
+                setBuilder.append("\"").append(column.getName()).append("\"")
+                        .append("=excluded.\"").append(column.getName()).append("\"").append(',');
+            }
+            if (setBuilder.length() > 0) {
+                setBuilder.deleteCharAt(setBuilder.length() - 1);
+                builder.append(" DO UPDATE SET ").append(setBuilder);
+            } else {
+                builder.append(" DO NOTHING");
+            }
+
             sql = builder.toString();
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
-            REPLACE_SQL_CACHE.put(table, sql);
-        } else {
-            result.setSql(sql);
-            result.addBindArgs(keyValueList);
+            UPSERT_SQL_CACHE.put(table, sql);
+        }
+        return sql;
+    }
+
+    private static String buildInsertOrReplaceSql(String prefix, TableEntity<?> table) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix);
+        builder.append("\"").append(table.getName()).append("\"");
+        builder.append(" (");
+        int length = 0;
+        Collection<ColumnEntity> columns = table.getColumnMap().values();
+        for (ColumnEntity column : columns) {
+            if (column.isAutoId()) continue;
+            builder.append("\"").append(column.getName()).append("\"").append(',');
+            length++;
         }
+        builder.deleteCharAt(builder.length() - 1);
+        builder.append(") VALUES (");
 
-        return result;
+        for (int i = 0; i < length; i++) {
+            builder.append("?,");
+        }
+        builder.deleteCharAt(builder.length() - 1);
+        builder.append(")");
+        return builder.toString();
+    }
+
+    /**
+     * 将实体的列值重新绑定到 {@link #buildInsertSql} 或 {@link #buildReplaceSql} 编译出的statement上,
+     * 用于批量写入时复用同一个statement.
+     */
+    @SuppressWarnings("unchecked")
+    public static void bindEntity(SQLiteStatement statement, TableEntity<?> table, Object entity) {
+        statement.clearBindings();
+        EntityAdapter adapter = table.getEntityAdapter();
+        if (adapter != null) {
+            adapter.bindStatement(statement, entity);
+            return;
+        }
+
+        int index = 0;
+        Collection<ColumnEntity> columns = table.getColumnMap().values();
+        for (ColumnEntity column : columns) {
+            if (column.isAutoId()) continue;
+            column.bindValue(statement, ++index, entity);
+        }
     }
 
     //*********************************************** delete sql ***********************************************
@@ -253,6 +325,20 @@ public final class SqlInfoBuilder {
         return new SqlInfo(builder.toString());
     }
 
+    public static SqlInfo buildCreateIndexSqlInfo(TableEntity<?> table, IndexEntity index) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(index.isUnique() ? "CREATE UNIQUE INDEX IF NOT EXISTS " : "CREATE INDEX IF NOT EXISTS ");
+        builder.append("\"").append(index.getName()).append("\"");
+        builder.append(" ON ").append("\"").append(table.getName()).append("\"");
+        builder.append(" (");
+        for (String column : index.getColumns()) {
+            builder.append("\"").append(column).append("\"").append(',');
+        }
+        builder.deleteCharAt(builder.length() - 1);
+        builder.append(")");
+        return new SqlInfo(builder.toString());
+    }
+
     public static List<KeyValue> entity2KeyValueList(TableEntity<?> table, Object entity) {
 
         Collection<ColumnEntity> columns = table.getColumnMap().values();
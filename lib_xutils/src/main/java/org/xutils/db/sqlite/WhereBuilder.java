@@ -32,6 +32,17 @@ import java.util.List;
  */
 public class WhereBuilder {
 
+    /**
+     * 参数占位符, 生成sql中的 "?", 用于 Selector#prepare() 创建的 PreparedSelector,
+     * 只能用于普通的比较运算(不支持 IN 和 BETWEEN).
+     */
+    public static final Object ARG = new Object() {
+        @Override
+        public String toString() {
+            return "?";
+        }
+    };
+
     private final List<String> whereItems;
 
     private WhereBuilder() {
@@ -153,7 +164,9 @@ public class WhereBuilder {
         }
 
         // append op & value
-        if (value == null) {
+        if (value == ARG) {
+            builder.append(" ").append(op).append(" ?");
+        } else if (value == null) {
             if ("=".equals(op)) {
                 builder.append(" IS NULL");
             } else if ("<>".equals(op)) {
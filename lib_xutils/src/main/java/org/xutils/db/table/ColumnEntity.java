@@ -16,12 +16,15 @@
 package org.xutils.db.table;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import org.xutils.common.util.LogUtil;
 import org.xutils.db.annotation.Column;
 import org.xutils.db.converter.ColumnConverter;
 import org.xutils.db.converter.ColumnConverterFactory;
+import org.xutils.db.converter.PrimitiveColumnConverter;
 import org.xutils.db.sqlite.ColumnDbType;
+import org.xutils.db.sqlite.SqlInfo;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -39,6 +42,11 @@ public final class ColumnEntity {
     protected final Field columnField;
     protected final ColumnConverter columnConverter;
 
+    /**
+     * 基本类型字段且没有get/set方法时不为null, 读写不产生装箱对象.
+     */
+    private final PrimitiveColumnConverter primitiveConverter;
+
     /* package */ ColumnEntity(Class<?> entityType, Field field, Column column) {
         field.setAccessible(true);
 
@@ -60,51 +68,76 @@ public final class ColumnEntity {
         if (this.setMethod != null && !this.setMethod.isAccessible()) {
             this.setMethod.setAccessible(true);
         }
+
+        if (fieldType.isPrimitive() && getMethod == null && setMethod == null
+                && columnConverter instanceof PrimitiveColumnConverter) {
+            this.primitiveConverter = (PrimitiveColumnConverter) columnConverter;
+        } else {
+            this.primitiveConverter = null;
+        }
     }
 
     public void setValueFromCursor(Object entity, Cursor cursor, int index) {
-        Object value = columnConverter.getFieldValue(cursor, index);
-        if (value == null) return;
-
-        if (setMethod != null) {
+        if (primitiveConverter != null) {
             try {
-                setMethod.invoke(entity, value);
-            } catch (Throwable e) {
-                LogUtil.e(e.getMessage(), e);
-            }
-        } else {
-            try {
-                this.columnField.set(entity, value);
+                primitiveConverter.readField(entity, columnField, cursor, index);
             } catch (Throwable e) {
                 LogUtil.e(e.getMessage(), e);
             }
+            return;
         }
+
+        Object value = columnConverter.getFieldValue(cursor, index);
+        if (value == null) return;
+
+        setFieldValue(entity, value);
     }
 
     @SuppressWarnings("unchecked")
     public Object getColumnValue(Object entity) {
         Object fieldValue = getFieldValue(entity);
-        if (this.isAutoId && (fieldValue.equals(0L) || fieldValue.equals(0))) {
+        if (this.isAutoId && ((Number) fieldValue).longValue() == 0L) {
             return null;
         }
         return columnConverter.fieldValue2DbValue(fieldValue);
     }
 
+    /**
+     * 将实体的列值绑定到statement
+     *
+     * @param index 从1开始
+     */
+    public void bindValue(SQLiteStatement statement, int index, Object entity) {
+        if (primitiveConverter != null) {
+            try {
+                primitiveConverter.bindField(entity, columnField, statement, index);
+                return;
+            } catch (Throwable e) {
+                LogUtil.e(e.getMessage(), e);
+            }
+        }
+        SqlInfo.bindArg(statement, index, getFieldValue(entity));
+    }
+
     public void setAutoIdValue(Object entity, long value) {
         Object idValue = value;
         if (ColumnUtils.isInteger(columnField.getType())) {
             idValue = (int) value;
         }
 
+        setFieldValue(entity, idValue);
+    }
+
+    public void setFieldValue(Object entity, Object value) {
         if (setMethod != null) {
             try {
-                setMethod.invoke(entity, idValue);
+                setMethod.invoke(entity, value);
             } catch (Throwable e) {
                 LogUtil.e(e.getMessage(), e);
             }
         } else {
             try {
-                this.columnField.set(entity, idValue);
+                this.columnField.set(entity, value);
             } catch (Throwable e) {
                 LogUtil.e(e.getMessage(), e);
             }
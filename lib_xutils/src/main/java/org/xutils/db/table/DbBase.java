@@ -44,6 +44,7 @@ public abstract class DbBase implements DbManager {
         if (!table.tableIsExist()) return;
         execNonQuery("DROP TABLE \"" + table.getName() + "\"");
         table.setCheckedDatabase(false);
+        table.setCheckedIndexes(false);
         this.removeTable(entityType);
     }
 
@@ -64,6 +65,7 @@ public abstract class DbBase implements DbManager {
                 synchronized (tableMap) {
                     for (TableEntity<?> table : tableMap.values()) {
                         table.setCheckedDatabase(false);
+                        table.setCheckedIndexes(false);
                     }
                     tableMap.clear();
                 }
@@ -86,6 +88,12 @@ public abstract class DbBase implements DbManager {
                     append(" ").append(col.getColumnDbType()).
                     append(" ").append(col.getProperty());
             execNonQuery(builder.toString());
+
+            for (IndexEntity index : table.getIndexList()) {
+                if (index.containsColumn(column)) {
+                    execNonQuery(SqlInfoBuilder.buildCreateIndexSqlInfo(table, index));
+                }
+            }
         }
     }
 
@@ -100,6 +108,7 @@ public abstract class DbBase implements DbManager {
                         execNonQuery(execAfterTableCreated);
                     }
                     table.setCheckedDatabase(true);
+                    createIndexesIfNotExist(table);
                     TableCreateListener listener = this.getDaoConfig().getTableCreateListener();
                     if (listener != null) {
                         listener.onTableCreated(this, table);
@@ -107,6 +116,21 @@ public abstract class DbBase implements DbManager {
                 }
             }
         }
+        // 升级后已存在的表可能缺少新声明的索引
+        createIndexesIfNotExist(table);
+    }
+
+    private void createIndexesIfNotExist(TableEntity<?> table) throws DbException {
+        if (!table.isCheckedIndexes()) {
+            synchronized (table.getClass()) {
+                if (!table.isCheckedIndexes()) {
+                    for (IndexEntity index : table.getIndexList()) {
+                        execNonQuery(SqlInfoBuilder.buildCreateIndexSqlInfo(table, index));
+                    }
+                    table.setCheckedIndexes(true);
+                }
+            }
+        }
     }
 
     protected void removeTable(Class<?> entityType) {
@@ -0,0 +1,31 @@
+package org.xutils.db.table;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * 实体类的非反射访问器,
+ * 由 lib_xutils_compiler 在编译期为 @Table 类生成, 类名为: 实体类名 + "$$EntityAdapter".
+ * TableEntity 存在对应的 EntityAdapter 时使用它读写列值, 否则使用反射.
+ */
+public interface EntityAdapter<T> {
+
+    /**
+     * 所有列名(包含id), 顺序与 bindStatement 和 readCursor 中的列顺序一致.
+     */
+    String[] getColumnNames();
+
+    T createEntity();
+
+    /**
+     * 按 getColumnNames() 的顺序(跳过自增id)从index 1开始绑定列值.
+     */
+    void bindStatement(SQLiteStatement statement, T entity);
+
+    /**
+     * @param columnIndexes getColumnNames()中每一列在cursor中的位置, 不存在时为-1.
+     */
+    void readCursor(T entity, Cursor cursor, int[] columnIndexes);
+
+    void setAutoIdValue(T entity, long value);
+}
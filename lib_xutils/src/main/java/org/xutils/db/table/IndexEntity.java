@@ -0,0 +1,53 @@
+package org.xutils.db.table;
+
+import org.xutils.db.annotation.Index;
+
+/**
+ * 表的索引信息, 来自 @Index 注解.
+ */
+public final class IndexEntity {
+
+    private final String name;
+    private final String[] columns;
+    private final boolean unique;
+
+    /* package */ IndexEntity(String tableName, Index index, String[] columns) {
+        this.columns = columns;
+        this.unique = index.unique();
+        if (index.name().length() > 0) {
+            this.name = index.name();
+        } else {
+            StringBuilder builder = new StringBuilder("index_").append(tableName);
+            for (String column : columns) {
+                builder.append('_').append(column);
+            }
+            this.name = builder.toString();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public boolean containsColumn(String columnName) {
+        for (String column : columns) {
+            if (column.equals(columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
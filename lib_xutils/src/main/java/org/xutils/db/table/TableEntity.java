@@ -24,6 +24,7 @@ import org.xutils.ex.DbException;
 
 import java.lang.reflect.Constructor;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 
 public final class TableEntity<T> {
@@ -35,12 +36,20 @@ public final class TableEntity<T> {
     private Class<T> entityType;
     private Constructor<T> constructor;
     private volatile boolean checkedDatabase;
+    private volatile boolean checkedIndexes;
 
     /**
      * key: columnName
      */
     private final LinkedHashMap<String, ColumnEntity> columnMap;
 
+    /**
+     * 编译期生成的访问器, 不存在时为null
+     */
+    private final EntityAdapter<T> entityAdapter;
+
+    private final List<IndexEntity> indexList;
+
     /*package*/ TableEntity(DbManager db, Class<T> entityType) throws Throwable {
         this.db = db;
         this.entityType = entityType;
@@ -49,7 +58,14 @@ public final class TableEntity<T> {
         Table table = entityType.getAnnotation(Table.class);
         this.name = table.name();
         this.onCreated = table.onCreated();
-        this.columnMap = TableUtils.findColumnMap(entityType);
+        LinkedHashMap<String, ColumnEntity> columnMap = TableUtils.findColumnMap(entityType);
+        this.entityAdapter = TableUtils.findEntityAdapter(entityType, columnMap);
+        if (this.entityAdapter != null) {
+            // 列顺序与EntityAdapter保持一致
+            columnMap = TableUtils.sortColumnMap(columnMap, this.entityAdapter.getColumnNames());
+        }
+        this.columnMap = columnMap;
+        this.indexList = TableUtils.findIndexList(entityType, name, columnMap);
 
         for (ColumnEntity column : columnMap.values()) {
             if (column.isId()) {
@@ -60,6 +76,9 @@ public final class TableEntity<T> {
     }
 
     public T createEntity() throws Throwable {
+        if (entityAdapter != null) {
+            return entityAdapter.createEntity();
+        }
         return this.constructor.newInstance();
     }
 
@@ -112,6 +131,14 @@ public final class TableEntity<T> {
         return columnMap;
     }
 
+    public List<IndexEntity> getIndexList() {
+        return indexList;
+    }
+
+    public EntityAdapter<T> getEntityAdapter() {
+        return entityAdapter;
+    }
+
     /*package*/ boolean isCheckedDatabase() {
         return checkedDatabase;
     }
@@ -120,6 +147,14 @@ public final class TableEntity<T> {
         this.checkedDatabase = checkedDatabase;
     }
 
+    /*package*/ boolean isCheckedIndexes() {
+        return checkedIndexes;
+    }
+
+    /*package*/ void setCheckedIndexes(boolean checkedIndexes) {
+        this.checkedIndexes = checkedIndexes;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -17,15 +17,22 @@ package org.xutils.db.table;
 
 import org.xutils.common.util.LogUtil;
 import org.xutils.db.annotation.Column;
+import org.xutils.db.annotation.Index;
+import org.xutils.db.annotation.Table;
 import org.xutils.db.converter.ColumnConverterFactory;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 /* package */ final class TableUtils {
 
+    private static final String ENTITY_ADAPTER_SUFFIX = "$$EntityAdapter";
+
     private TableUtils() {
     }
 
@@ -36,6 +43,77 @@ import java.util.LinkedHashMap;
         return columnMap;
     }
 
+    /* package */
+    static List<IndexEntity> findIndexList(Class<?> entityType, String tableName, HashMap<String, ColumnEntity> columnMap) {
+        List<IndexEntity> indexList = new ArrayList<IndexEntity>();
+
+        // 单列索引
+        for (ColumnEntity column : columnMap.values()) {
+            Index indexAnn = column.getColumnField().getAnnotation(Index.class);
+            if (indexAnn != null) {
+                indexList.add(new IndexEntity(tableName, indexAnn, new String[]{column.getName()}));
+            }
+        }
+
+        // 组合索引
+        Table tableAnn = entityType.getAnnotation(Table.class);
+        for (Index indexAnn : tableAnn.indexes()) {
+            String[] columns = indexAnn.columns();
+            boolean valid = columns.length > 0;
+            for (String column : columns) {
+                if (!columnMap.containsKey(column)) {
+                    valid = false;
+                    break;
+                }
+            }
+            if (valid) {
+                indexList.add(new IndexEntity(tableName, indexAnn, columns));
+            } else {
+                LogUtil.w("invalid index columns on " + entityType.getName() + ": " + Arrays.toString(columns));
+            }
+        }
+
+        return indexList;
+    }
+
+    /* package */
+    @SuppressWarnings("unchecked")
+    static <T> EntityAdapter<T> findEntityAdapter(Class<T> entityType, HashMap<String, ColumnEntity> columnMap) {
+        EntityAdapter<T> result = null;
+        try {
+            Class<?> adapterType = Class.forName(entityType.getName() + ENTITY_ADAPTER_SUFFIX, true, entityType.getClassLoader());
+            result = (EntityAdapter<T>) adapterType.newInstance();
+        } catch (ClassNotFoundException ignored) {
+            return null;
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+            return null;
+        }
+
+        // 生成的代码与实体类不一致时(如未重新编译), 使用反射.
+        String[] columnNames = result.getColumnNames();
+        if (columnNames == null || columnNames.length != columnMap.size()) {
+            LogUtil.w(entityType.getName() + ENTITY_ADAPTER_SUFFIX + " is out of date");
+            return null;
+        }
+        for (String columnName : columnNames) {
+            if (!columnMap.containsKey(columnName)) {
+                LogUtil.w(entityType.getName() + ENTITY_ADAPTER_SUFFIX + " is out of date");
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /* package */
+    static LinkedHashMap<String, ColumnEntity> sortColumnMap(HashMap<String, ColumnEntity> columnMap, String[] columnNames) {
+        LinkedHashMap<String, ColumnEntity> result = new LinkedHashMap<String, ColumnEntity>(columnMap.size());
+        for (String columnName : columnNames) {
+            result.put(columnName, columnMap.get(columnName));
+        }
+        return result;
+    }
+
     private static void addColumns2Map(Class<?> entityType, HashMap<String, ColumnEntity> columnMap) {
         if (Object.class.equals(entityType)) return;
 
@@ -0,0 +1,222 @@
+package org.xutils.http;
+
+import android.os.SystemClock;
+
+import org.xutils.common.Callback;
+import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
+import org.xutils.http.app.RetryBudget;
+import org.xutils.http.request.UriRequest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求:
+ * 主请求超过hedgeDelay未返回时发出第二个相同的请求, 使用先成功返回的结果, 并关闭另一个请求.
+ * 请求在共用的线程池中执行, 线程池已满时主请求在调用线程中执行, 不发出对冲请求.
+ * 对冲请求与重试共用RetryBudget, 预算不足时不发出.
+ */
+/*package*/ final class HedgedRequest implements Closeable {
+
+    /*package*/ interface RequestFactory {
+        UriRequest create() throws Throwable;
+    }
+
+    private static final int MAX_POOL_SIZE = 16;
+    private static final int KEEP_ALIVE = 30; // 空闲线程超时(s)
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            0, MAX_POOL_SIZE,
+            KEEP_ALIVE, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "xUtils-hedge#" + mCount.getAndIncrement());
+                }
+            });
+
+    private final UriRequest primary;
+    private final RetryBudget retryBudget;
+    private UriRequest hedge;
+    private UriRequest winner;
+    private Object result;
+    private Throwable primaryError;
+    private Throwable hedgeError;
+    private int running;
+    private boolean closed;
+
+    /**
+     * @param retryBudget 为null时不限制对冲请求
+     */
+    public HedgedRequest(UriRequest primary, RetryBudget retryBudget) {
+        this.primary = primary;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * @return 先成功返回的结果, 都失败时抛出主请求的异常.
+     */
+    public Object load(long hedgeDelay, RequestFactory factory) throws Throwable {
+        try {
+            if (!start(primary)) {
+                return primary.loadResult();
+            }
+            if (!await(hedgeDelay)) {
+                // 与重试共用预算, 避免host变慢时对冲请求成倍增加它的负载
+                if (tryWithdraw()) {
+                    UriRequest request = null;
+                    try {
+                        request = factory.create();
+                    } catch (Throwable ex) {
+                        LogUtil.w("create hedged request error", ex);
+                    }
+                    if (request != null) {
+                        synchronized (this) {
+                            if (winner == null && running > 0 && !closed) {
+                                hedge = request;
+                            }
+                        }
+                        if (hedge == request) {
+                            LogUtil.d("hedge: " + request.getRequestUri());
+                            if (!start(request)) {
+                                synchronized (this) {
+                                    hedge = null;
+                                }
+                                IOUtil.closeQuietly(request);
+                            }
+                        } else {
+                            IOUtil.closeQuietly(request);
+                        }
+                    }
+                }
+                await(0);
+            }
+
+            synchronized (this) {
+                if (winner != null) {
+                    return result;
+                }
+                if (closed) {
+                    throw new Callback.CancelledException("hedged request closed");
+                }
+                throw primaryError != null ? primaryError : hedgeError;
+            }
+        } catch (InterruptedException ex) {
+            close();
+            throw new Callback.CancelledException("hedged request interrupted");
+        }
+    }
+
+    private boolean tryWithdraw() {
+        if (retryBudget != null && !retryBudget.tryWithdraw()) {
+            LogUtil.d("hedge skipped, retry budget exhausted: " + primary.getRequestUri());
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized UriRequest getWinner() {
+        return winner;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            this.notifyAll();
+        }
+        IOUtil.closeQuietly(primary);
+        IOUtil.closeQuietly(hedge);
+    }
+
+    /**
+     * 等待有请求成功或所有请求结束
+     *
+     * @param timeout 为0时一直等待
+     * @return 超时返回false
+     */
+    private synchronized boolean await(long timeout) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeout;
+        while (winner == null && running > 0 && !closed) {
+            if (timeout > 0) {
+                long wait = deadline - SystemClock.uptimeMillis();
+                if (wait <= 0) return false;
+                this.wait(wait);
+            } else {
+                this.wait();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 线程池已满时返回false
+     */
+    private boolean start(final UriRequest request) {
+        synchronized (this) {
+            running++;
+        }
+        try {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Object result = null;
+                    Throwable error = null;
+                    try {
+                        result = request.loadResult();
+                    } catch (Throwable ex) {
+                        error = ex;
+                    }
+                    onDone(request, result, error);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            synchronized (this) {
+                running--;
+            }
+            return false;
+        }
+    }
+
+    private void onDone(UriRequest request, Object result, Throwable error) {
+        List<Closeable> closeList = new ArrayList<Closeable>(2);
+        synchronized (this) {
+            running--;
+            if (error == null && winner == null && !closed) {
+                winner = request;
+                this.result = result;
+                // 关闭另一个请求
+                if (request != primary) {
+                    closeList.add(primary);
+                } else if (hedge != null) {
+                    closeList.add(hedge);
+                }
+            } else if (error == null) {
+                if (result instanceof Closeable) {
+                    closeList.add((Closeable) result);
+                }
+                closeList.add(request);
+            } else if (request == primary) {
+                primaryError = error;
+            } else {
+                hedgeError = error;
+            }
+            this.notifyAll();
+        }
+        for (Closeable closeable : closeList) {
+            IOUtil.closeQuietly(closeable);
+        }
+    }
+}
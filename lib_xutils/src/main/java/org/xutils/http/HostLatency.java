@@ -0,0 +1,59 @@
+package org.xutils.http;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 记录每个host最近的响应时间, 用于计算对冲请求的等待时间.
+ */
+/*package*/ final class HostLatency {
+
+    private static final int MAX_HOST_COUNT = 64;
+    private static final int WINDOW_SIZE = 64; // 保留最近的响应时间个数
+    private static final int MIN_SAMPLE_COUNT = 16; // 样本太少时不计算p95
+
+    private static final LinkedHashMap<String, HostLatency> HOST_MAP =
+            new LinkedHashMap<String, HostLatency>(MAX_HOST_COUNT, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, HostLatency> eldest) {
+                    return size() > MAX_HOST_COUNT;
+                }
+            };
+
+    private final long[] samples = new long[WINDOW_SIZE];
+    private int count;
+    private int index;
+
+    private HostLatency() {
+    }
+
+    public static HostLatency get(String host) {
+        synchronized (HOST_MAP) {
+            HostLatency result = HOST_MAP.get(host);
+            if (result == null) {
+                result = new HostLatency();
+                HOST_MAP.put(host, result);
+            }
+            return result;
+        }
+    }
+
+    public synchronized void record(long latency) {
+        samples[index] = latency;
+        index = (index + 1) % WINDOW_SIZE;
+        if (count < WINDOW_SIZE) {
+            count++;
+        }
+    }
+
+    /**
+     * @return 样本不足时返回-1
+     */
+    public synchronized long getP95() {
+        if (count < MIN_SAMPLE_COUNT) return -1;
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(count * 0.95) - 1];
+    }
+}
@@ -1,11 +1,13 @@
 package org.xutils.http;
 
+import android.net.Uri;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import org.xutils.common.Callback;
 import org.xutils.common.task.AbsTask;
 import org.xutils.common.task.Priority;
-import org.xutils.common.task.PriorityExecutor;
+import org.xutils.common.task.AdaptiveExecutor;
 import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.LogUtil;
 import org.xutils.common.util.ParameterizedTypeUtil;
@@ -15,6 +17,7 @@ import org.xutils.http.app.HttpRetryHandler;
 import org.xutils.http.app.RedirectHandler;
 import org.xutils.http.app.RequestInterceptListener;
 import org.xutils.http.app.RequestTracker;
+import org.xutils.http.request.HttpRequest;
 import org.xutils.http.request.UriRequest;
 import org.xutils.http.request.UriRequestFactory;
 import org.xutils.x;
@@ -39,6 +42,9 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     private RequestParams params;
     private UriRequest request;
     private RequestWorker requestWorker;
+    private volatile InflightRequest inflightRequest;
+    private volatile boolean closedByCancel = false; // 取消时已关闭网络请求
+    private volatile HedgedRequest hedgedRequest;
     private final Executor executor;
     private final Callback.CommonCallback<ResultType> callback;
 
@@ -65,8 +71,9 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     private static final HashMap<String, WeakReference<HttpTask<?>>>
             DOWNLOAD_TASK = new HashMap<String, WeakReference<HttpTask<?>>>(1);
 
-    private static final PriorityExecutor HTTP_EXECUTOR = new PriorityExecutor(5, true);
-    private static final PriorityExecutor CACHE_EXECUTOR = new PriorityExecutor(5, true);
+    // 按host限制并发数(不低于原来的线程池大小5), 工作线程数在5~16之间根据等待时间和吞吐量调整
+    private static final AdaptiveExecutor HTTP_EXECUTOR = new AdaptiveExecutor(5, 16, 5, true);
+    private static final AdaptiveExecutor CACHE_EXECUTOR = new AdaptiveExecutor(5, 16, 5, true);
 
 
     public HttpTask(RequestParams params, Callback.Cancelable cancelHandler,
@@ -111,14 +118,42 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
         if (params.getExecutor() != null) {
             this.executor = params.getExecutor();
         } else {
+            String host = getHost(params.getUri());
             if (cacheCallback != null) {
-                this.executor = CACHE_EXECUTOR;
+                this.executor = CACHE_EXECUTOR.forKey(host);
             } else {
-                this.executor = HTTP_EXECUTOR;
+                this.executor = HTTP_EXECUTOR.forKey(host);
             }
         }
     }
 
+    /**
+     * 默认的网络请求线程池, 可用于调整每个host的并发数或查看等待队列长度, 等待时间等统计数据.
+     */
+    public static AdaptiveExecutor getHttpExecutor() {
+        return HTTP_EXECUTOR;
+    }
+
+    /**
+     * 使用CacheCallback的请求的默认线程池
+     */
+    public static AdaptiveExecutor getCacheExecutor() {
+        return CACHE_EXECUTOR;
+    }
+
+    /**
+     * @return 没有host(如本地文件, assets)时返回null, 不限制并发数
+     */
+    private static String getHost(String uri) {
+        if (TextUtils.isEmpty(uri)) return null;
+        try {
+            String host = Uri.parse(uri).getHost();
+            return TextUtils.isEmpty(host) ? null : host;
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
     // 解析loadType
     private void resolveLoadType() {
         Class<?> callBackType = callback.getClass();
@@ -138,11 +173,94 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
         UriRequest result = UriRequestFactory.getUriRequest(params, loadType);
         result.setCallingClassLoader(callback.getClass().getClassLoader());
         result.setProgressHandler(this);
+        result.setCacheEnabled(cacheCallback != null && HttpMethod.permitsCache(params.getMethod()));
         this.loadingUpdateMaxTimeSpan = params.getLoadingUpdateMaxTimeSpan();
         this.update(FLAG_REQUEST_CREATED, result);
         return result;
     }
 
+    /**
+     * 加入正在进行中的相同请求, 不能共享时返回null.
+     * 只共享没有缓存验证头的GET请求, 文件下载和流式结果不共享.
+     */
+    private InflightRequest joinInflightRequest(boolean noCacheHeader) {
+        if (!noCacheHeader || !params.isShareInflight()
+                || !(request instanceof HttpRequest)
+                || !HttpMethod.permitsCache(params.getMethod())
+                || File.class == loadType
+                || (loadType instanceof Class && Closeable.class.isAssignableFrom((Class<?>) loadType))) {
+            return null;
+        }
+        String key = params.getMethod() + ":" + request.getCacheKey() + ":" + loadType;
+        return InflightRequest.join(key, this);
+    }
+
+    // 重试前等待, 等待过程中可以被取消.
+    private void waitForRetry(long delay) {
+        if (delay <= 0) return;
+        LogUtil.d("retry after " + delay + "ms: " + params.getUri());
+        long deadline = SystemClock.uptimeMillis() + delay;
+        long wait;
+        while (!this.isCancelled() && (wait = deadline - SystemClock.uptimeMillis()) > 0) {
+            try {
+                Thread.sleep(Math.min(wait, 100));
+            } catch (InterruptedException ex) {
+                break;
+            }
+        }
+    }
+
+    // 对冲请求只用于GET请求, 不用于文件下载和返回流的请求.
+    private boolean isHedgeable() {
+        return request instanceof HttpRequest
+                && params.getMethod() == HttpMethod.GET
+                && File.class != loadType
+                && !(loadType instanceof Class && Closeable.class.isAssignableFrom((Class<?>) loadType));
+    }
+
+    // 可对冲的请求记录host的响应时间,
+    // 开启对冲时请求超过host最近响应时间的p95仍未返回, 则发出第二个请求.
+    private Object loadRequestResult() throws Throwable {
+        if (!isHedgeable()) {
+            return request.loadResult();
+        }
+
+        HostLatency latency = HostLatency.get(getHost(params.getUri()));
+        long hedgeDelay = params.isHedgeEnabled() ? latency.getP95() : -1;
+        long startTime = SystemClock.uptimeMillis();
+        Object result;
+        if (hedgeDelay > 0) {
+            HedgedRequest hedged = new HedgedRequest(request, params.getRetryBudget());
+            hedgedRequest = hedged;
+            try {
+                result = hedged.load(hedgeDelay, new HedgedRequest.RequestFactory() {
+                    @Override
+                    public UriRequest create() throws Throwable {
+                        UriRequest hedge = UriRequestFactory.getUriRequest(params, loadType);
+                        hedge.setCallingClassLoader(callback.getClass().getClassLoader());
+                        hedge.setCacheEnabled(cacheCallback != null && HttpMethod.permitsCache(params.getMethod()));
+                        hedge.setCacheEntity(request.getCacheEntity());
+                        HttpTask.this.update(FLAG_REQUEST_CREATED, hedge);
+                        if (requestInterceptListener != null) {
+                            requestInterceptListener.beforeRequest(hedge);
+                        }
+                        return hedge;
+                    }
+                });
+                UriRequest winner = hedged.getWinner();
+                if (winner != null && winner != request) {
+                    request = winner; // 使用对冲请求的响应头和缓存
+                }
+            } finally {
+                hedgedRequest = null;
+            }
+        } else {
+            result = request.loadResult();
+        }
+        latency.record(SystemClock.uptimeMillis() - startTime);
+        return result;
+    }
+
     // 文件下载冲突检测
     private void checkDownloadTask() {
         if (File.class == loadType) {
@@ -206,6 +324,11 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
             retryHandler = new HttpRetryHandler();
         }
         retryHandler.setMaxRetryCount(this.params.getMaxRetryCount());
+        retryHandler.setRetryBackoff(this.params.getRetryBaseDelay(), this.params.getRetryMaxDelay());
+        retryHandler.setRetryBudget(this.params.getRetryBudget());
+        if (this.params.getRetryBudget() != null) {
+            this.params.getRetryBudget().deposit();
+        }
 
         if (this.isCancelled()) {
             throw new Callback.CancelledException("cancelled before request");
@@ -213,6 +336,8 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
         // 检查缓存
         Object cacheResult = null;
+        boolean staleCacheDelivered = false;
+        boolean resultSameAsCache = false;
         if (cacheCallback != null && HttpMethod.permitsCache(params.getMethod())) {
             // 尝试从缓存获取结果, 并为请求头加入缓存控制参数.
             try {
@@ -246,7 +371,11 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                     throw new Callback.CancelledException("cancelled before request");
                 }
 
-                if (cacheResult != null) {
+                if (cacheResult != null && params.isStaleWhileRevalidate()) {
+                    // 立即返回缓存, 不等待onCache的结果, 继续在当前线程验证缓存.
+                    this.update(FLAG_STALE_CACHE, cacheResult);
+                    staleCacheDelivered = true;
+                } else if (cacheResult != null) {
                     // 同步等待是否信任缓存
                     this.update(FLAG_CACHE, cacheResult);
                     while (trustCache == null) {
@@ -296,19 +425,47 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
                 try {
                     clearRawResult();
-                    // 开始请求工作
-                    LogUtil.d("load: " + this.request.getRequestUri());
-                    requestWorker = new RequestWorker();
-                    if (params.isCancelFast()) {
-                        requestWorker.start();
-                        requestWorker.join();
-                    } else {
-                        requestWorker.run();
+                    // 相同的请求正在进行时等待并共享它的结果
+                    boolean shared = false;
+                    inflightRequest = joinInflightRequest(cacheResult == null);
+                    if (inflightRequest != null && !inflightRequest.isLeader(this)) {
+                        LogUtil.d("share in-flight: " + this.request.getRequestUri());
+                        shared = inflightRequest.await(this);
+                        if (shared) {
+                            if (inflightRequest.getException() != null) {
+                                throw inflightRequest.getException();
+                            }
+                            rawResult = inflightRequest.getResult();
+                        }
+                        inflightRequest = null;
                     }
-                    if (requestWorker.ex != null) {
-                        throw requestWorker.ex;
+
+                    if (!shared) {
+                        // 开始请求工作
+                        LogUtil.d("load: " + this.request.getRequestUri());
+                        requestWorker = new RequestWorker();
+                        try {
+                            if (params.isCancelFast()) {
+                                requestWorker.start();
+                                requestWorker.join();
+                            } else {
+                                requestWorker.run();
+                            }
+                        } finally {
+                            if (inflightRequest != null) {
+                                // leader被取消但还有follower时没有关闭网络请求, 结果仍然交给follower.
+                                boolean aborted = requestWorker.ex instanceof HttpRedirectException
+                                        || (this.isCancelled()
+                                        && (closedByCancel || !inflightRequest.hasFollowers()));
+                                inflightRequest.complete(requestWorker.result, requestWorker.ex, aborted);
+                                inflightRequest = null;
+                            }
+                        }
+                        if (requestWorker.ex != null) {
+                            throw requestWorker.ex;
+                        }
+                        rawResult = requestWorker.result;
                     }
-                    rawResult = requestWorker.result;
                 } catch (Throwable ex) {
                     clearRawResult();
                     if (this.isCancelled()) {
@@ -333,6 +490,10 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                     result = (ResultType) rawResult;
                 }
 
+                if (staleCacheDelivered) {
+                    resultSameAsCache = this.request.isResultSameAsCache();
+                }
+
                 // 保存缓存
                 if (cacheCallback != null && HttpMethod.permitsCache(params.getMethod())) {
                     this.request.save2Cache();
@@ -353,11 +514,26 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                         exception = new Callback.CancelledException("canceled by user");
                     }
                     retry = retryHandler.canRetry(this.request, exception, ++retryCount);
+                    if (retry) {
+                        waitForRetry(retryHandler.getRetryDelay(this.request, exception, retryCount));
+                    }
                 }
             }
 
         }
 
+        if (staleCacheDelivered) {
+            // 已经返回了缓存, 验证失败或内容没有变化时不再通知
+            if (exception != null && result == null) {
+                LogUtil.w("revalidate cache error: " + params.getUri(), exception);
+                return null;
+            }
+            if (result != null && resultSameAsCache) {
+                LogUtil.d("cache not changed: " + params.getUri());
+                return null;
+            }
+        }
+
         if (exception != null && result == null && !trustCache) {
             throw exception;
         }
@@ -368,6 +544,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
     private static final int FLAG_REQUEST_CREATED = 1;
     private static final int FLAG_CACHE = 2;
     private static final int FLAG_PROGRESS = 3;
+    private static final int FLAG_STALE_CACHE = 4;
 
     @Override
     @SuppressWarnings("unchecked")
@@ -396,6 +573,18 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                 }
                 break;
             }
+            case FLAG_STALE_CACHE: {
+                try {
+                    ResultType result = (ResultType) args[0];
+                    if (tracker != null) {
+                        tracker.onCache(request, result);
+                    }
+                    this.cacheCallback.onCache(result);
+                } catch (Throwable ex) {
+                    callback.onError(ex, true);
+                }
+                break;
+            }
             case FLAG_PROGRESS: {
                 if (this.progressCallback != null && args.length == 3) {
                     try {
@@ -485,6 +674,12 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
 
     @Override
     protected void cancelWorks() {
+        InflightRequest flight = inflightRequest;
+        if (flight != null && flight.isLeader(this) && flight.hasFollowers()) {
+            // 还有其他请求在等待结果, 不中断网络请求
+            return;
+        }
+        closedByCancel = true;
         x.task().run(new Runnable() {
             @Override
             public void run() {
@@ -506,6 +701,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
             } catch (Throwable ignored) {
             }
         }
+        IOUtil.closeQuietly(hedgedRequest);
         // wtf: okhttp close the inputStream be locked by BufferedInputStream#read
         IOUtil.closeQuietly(request);
     }
@@ -604,7 +800,7 @@ public class HttpTask<ResultType> extends AbsTask<ResultType> implements Progres
                 }
 
                 try {
-                    this.result = request.loadResult();
+                    this.result = loadRequestResult();
                 } catch (Throwable ex) {
                     this.ex = ex;
                 }
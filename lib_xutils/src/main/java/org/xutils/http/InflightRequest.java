@@ -0,0 +1,110 @@
+package org.xutils.http;
+
+import org.xutils.common.Callback;
+import org.xutils.common.task.AbsTask;
+
+import java.util.HashMap;
+
+/**
+ * 正在进行中的请求.
+ * 相同key的请求同时进行时, 第一个请求(leader)发起网络请求,
+ * 其他请求(follower)等待并共享它的结果.
+ */
+/*package*/ final class InflightRequest {
+
+    private static final HashMap<String, InflightRequest> INFLIGHT_MAP = new HashMap<String, InflightRequest>();
+
+    private final String key;
+    private final Object leader;
+    private int followerCount = 0;
+
+    private boolean done = false;
+    private boolean aborted = false;
+    private Object result;
+    private Throwable ex;
+
+    private InflightRequest(String key, Object leader) {
+        this.key = key;
+        this.leader = leader;
+    }
+
+    /**
+     * 加入key对应的请求, 不存在时caller成为leader.
+     */
+    public static InflightRequest join(String key, Object caller) {
+        synchronized (INFLIGHT_MAP) {
+            InflightRequest flight = INFLIGHT_MAP.get(key);
+            if (flight == null) {
+                flight = new InflightRequest(key, caller);
+                INFLIGHT_MAP.put(key, flight);
+            } else {
+                synchronized (flight) {
+                    flight.followerCount++;
+                }
+            }
+            return flight;
+        }
+    }
+
+    public boolean isLeader(Object caller) {
+        return leader == caller;
+    }
+
+    /**
+     * 是否还有follower在等待结果
+     */
+    public synchronized boolean hasFollowers() {
+        return followerCount > 0;
+    }
+
+    /**
+     * leader请求结束后调用, 唤醒所有follower.
+     *
+     * @param aborted leader的网络请求被取消关闭或需要重定向, follower需要各自重新请求.
+     */
+    public void complete(Object result, Throwable ex, boolean aborted) {
+        synchronized (INFLIGHT_MAP) {
+            if (INFLIGHT_MAP.get(key) == this) {
+                INFLIGHT_MAP.remove(key);
+            }
+        }
+        synchronized (this) {
+            this.result = result;
+            this.ex = ex;
+            this.aborted = aborted;
+            this.done = true;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * follower等待leader的结果.
+     *
+     * @return false: leader已放弃, 需要自己发起请求.
+     * @throws Callback.CancelledException follower自己被取消
+     */
+    public synchronized boolean await(AbsTask<?> follower) {
+        try {
+            while (!done) {
+                if (follower.isCancelled()) {
+                    throw new Callback.CancelledException("cancelled while waiting in-flight request");
+                }
+                try {
+                    this.wait(100);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            return !aborted;
+        } finally {
+            followerCount--;
+        }
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    public Throwable getException() {
+        return ex;
+    }
+}
@@ -9,6 +9,7 @@ import org.xutils.http.app.HttpRetryHandler;
 import org.xutils.http.app.ParamsBuilder;
 import org.xutils.http.app.RedirectHandler;
 import org.xutils.http.app.RequestTracker;
+import org.xutils.http.app.RetryBudget;
 
 import java.net.Proxy;
 import java.util.concurrent.Executor;
@@ -43,9 +44,19 @@ public class RequestParams extends BaseParams {
     private boolean autoResume = true; // 是否在下载是自动断点续传
     private boolean autoRename = false; // 是否根据头信息自动命名文件
     private int maxRetryCount = 2; // 最大请求错误重试次数
+    private long retryBaseDelay = 100; // 第一次重试前最多等待的时间(ms), 之后按指数增长
+    private long retryMaxDelay = 3000; // 重试前最多等待的时间(ms)
+    private RetryBudget retryBudget = RetryBudget.DEFAULT; // 多个请求共享的重试预算
+    private boolean hedgeEnabled = false; // 是否为GET请求发出对冲请求
+    private boolean staleWhileRevalidate = false; // 是否立即返回缓存并在后台验证
     private String saveFilePath; // 下载文件时文件保存的路径和文件名
+    private int downloadSegmentCount = 1; // 分段并行下载的连接数, <=1时不分段
     private boolean cancelFast = false; // 是否可以被立即停止, true: 为请求创建新的线程, 取消时请求线程被立即中断.
     private int loadingUpdateMaxTimeSpan = 300; // 进度刷新最大间隔时间(ms)
+    private boolean shareInflight = true; // 相同的GET请求同时进行时是否共享同一次网络请求和结果
+    private boolean acceptGzip = true; // 是否请求服务器压缩返回的数据(gzip)
+    private boolean gzipRequestBody = false; // 是否使用gzip压缩请求体
+    private boolean cacheCompressed = false; // 是否压缩存储缓存的文本数据
     private HttpRetryHandler httpRetryHandler; // 自定义HttpRetryHandler
     private RedirectHandler redirectHandler; // 自定义重定向接口, 默认系统自动重定向.
     private RequestTracker requestTracker; // 自定义日志记录接口.
@@ -287,6 +298,21 @@ public class RequestParams extends BaseParams {
         this.maxRetryCount = maxRetryCount;
     }
 
+    public int getDownloadSegmentCount() {
+        return downloadSegmentCount;
+    }
+
+    /**
+     * 分段并行下载的连接数.
+     * 大于1, 设置了saveFilePath, 开启了断点续传并且服务器支持Range时,
+     * 大文件(每段至少1M)会分成多段并行下载, 中断后按段继续下载.
+     *
+     * @param downloadSegmentCount 默认为1, 不分段
+     */
+    public void setDownloadSegmentCount(int downloadSegmentCount) {
+        this.downloadSegmentCount = downloadSegmentCount;
+    }
+
     /**
      * 是否可以被立即停止.
      *
@@ -305,6 +331,62 @@ public class RequestParams extends BaseParams {
         this.cancelFast = cancelFast;
     }
 
+    public boolean isShareInflight() {
+        return shareInflight;
+    }
+
+    /**
+     * 相同的GET请求(cacheKey和返回值类型都相同)同时进行时, 是否共享同一次网络请求和转换结果.
+     * 共享的结果对象会被多个回调同时持有, 如果回调会修改结果对象, 请关闭.
+     * 文件下载和带缓存验证头的请求不会共享.
+     *
+     * @param shareInflight 默认为true
+     */
+    public void setShareInflight(boolean shareInflight) {
+        this.shareInflight = shareInflight;
+    }
+
+    public boolean isAcceptGzip() {
+        return acceptGzip;
+    }
+
+    /**
+     * 是否发送 Accept-Encoding: gzip, 返回的数据在交给Loader前解压.
+     * 文件下载和带有Range头的请求不会请求压缩.
+     * 手动设置了Accept-Encoding头时不会解压返回的数据.
+     *
+     * @param acceptGzip 默认为true
+     */
+    public void setAcceptGzip(boolean acceptGzip) {
+        this.acceptGzip = acceptGzip;
+    }
+
+    public boolean isGzipRequestBody() {
+        return gzipRequestBody;
+    }
+
+    /**
+     * 是否使用gzip压缩请求体(仅StringBody和UrlEncodedParamsBody), 需要服务器支持 Content-Encoding: gzip.
+     *
+     * @param gzipRequestBody 默认为false
+     */
+    public void setGzipRequestBody(boolean gzipRequestBody) {
+        this.gzipRequestBody = gzipRequestBody;
+    }
+
+    public boolean isCacheCompressed() {
+        return cacheCompressed;
+    }
+
+    /**
+     * 是否使用gzip压缩存储缓存的文本数据
+     *
+     * @param cacheCompressed 默认为false
+     */
+    public void setCacheCompressed(boolean cacheCompressed) {
+        this.cacheCompressed = cacheCompressed;
+    }
+
     public int getLoadingUpdateMaxTimeSpan() {
         return loadingUpdateMaxTimeSpan;
     }
@@ -318,6 +400,70 @@ public class RequestParams extends BaseParams {
         this.loadingUpdateMaxTimeSpan = loadingUpdateMaxTimeSpan;
     }
 
+    public long getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public long getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    /**
+     * 重试前的指数退避等待时间, 第n次重试前等待 [0, baseDelay * 2^(n-1)] 内的随机时间, 不超过maxDelay.
+     *
+     * @param baseDelay 默认100ms, 为0时立即重试
+     * @param maxDelay  默认3000ms
+     */
+    public void setRetryBackoff(long baseDelay, long maxDelay) {
+        this.retryBaseDelay = baseDelay;
+        this.retryMaxDelay = maxDelay;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * 重试预算, 默认所有请求共享 {@link RetryBudget#DEFAULT}.
+     *
+     * @param retryBudget 为null时不限制重试
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    /**
+     * 是否为GET请求发出对冲请求:
+     * 请求超过该host最近响应时间的p95仍未返回时, 发出第二个相同的请求, 使用先返回的结果.
+     * 文件下载和返回流的请求不会对冲, 对冲请求与重试共用 {@link #getRetryBudget()}.
+     * 对冲请求同样回调 RequestTracker#onRequestCreated 和 RequestInterceptListener#beforeRequest,
+     * afterRequest 只对最终使用结果的请求回调.
+     *
+     * @param hedgeEnabled 默认为false
+     */
+    public void setHedgeEnabled(boolean hedgeEnabled) {
+        this.hedgeEnabled = hedgeEnabled;
+    }
+
+    public boolean isStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * 使用CacheCallback时, 是否立即通过onCache返回缓存(忽略onCache的返回值),
+     * 然后使用缓存的ETag和Last-Modified验证缓存, 只有内容变化时才调用onSuccess.
+     * 验证失败时不调用onError. 等待onCache的过程不再占用工作线程.
+     *
+     * @param staleWhileRevalidate 默认为false
+     */
+    public void setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
     public HttpRetryHandler getHttpRetryHandler() {
         return httpRetryHandler;
     }
@@ -24,6 +24,9 @@ import java.util.HashSet;
 public class HttpRetryHandler {
 
     protected int maxRetryCount = 2;
+    protected long retryBaseDelay = 0; // 第一次重试前等待的时间(ms)
+    protected long retryMaxDelay = 0; // 重试前最多等待的时间(ms)
+    protected RetryBudget retryBudget;
 
     protected static HashSet<Class<?>> blackList = new HashSet<Class<?>>();
 
@@ -49,6 +52,37 @@ public class HttpRetryHandler {
         this.maxRetryCount = maxRetryCount;
     }
 
+    /**
+     * 重试前按指数退避等待, 第count次重试最多等待 baseDelay * 2^(count-1), 不超过maxDelay.
+     *
+     * @param baseDelay 为0时立即重试
+     * @param maxDelay
+     */
+    public void setRetryBackoff(long baseDelay, long maxDelay) {
+        this.retryBaseDelay = baseDelay;
+        this.retryMaxDelay = maxDelay;
+    }
+
+    /**
+     * @param retryBudget 多个请求共享的重试预算, 为null时不限制.
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * 第count次重试前等待的时间(ms).
+     * 在退避时间内随机取值(full jitter), 避免大量失败的请求同时重试.
+     */
+    public long getRetryDelay(UriRequest request, Throwable ex, int count) {
+        if (retryBaseDelay <= 0 || count < 1) return 0;
+        long delay = retryBaseDelay << Math.min(count - 1, 20);
+        if (retryMaxDelay > 0 && delay > retryMaxDelay) {
+            delay = retryMaxDelay;
+        }
+        return (long) (Math.random() * (delay + 1));
+    }
+
     public boolean canRetry(UriRequest request, Throwable ex, int count) {
 
         LogUtil.w(ex.getMessage(), ex);
@@ -68,6 +102,11 @@ public class HttpRetryHandler {
             return false;
         }
 
+        if (retryBudget != null && !retryBudget.tryWithdraw()) {
+            LogUtil.w("The Retry budget has been exhausted.");
+            return false;
+        }
+
         return true;
     }
 }
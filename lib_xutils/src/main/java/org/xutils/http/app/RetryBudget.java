@@ -0,0 +1,61 @@
+package org.xutils.http.app;
+
+import android.os.SystemClock;
+
+/**
+ * 多个请求共享的重试预算.
+ * 每个请求存入ratio个令牌, 每次重试取出一个令牌, 另外每秒固定允许minRetriesPerSecond次重试.
+ * 服务异常时重试的数量不会超过请求数量的ratio倍, 避免重试风暴.
+ */
+public class RetryBudget {
+
+    public static final RetryBudget DEFAULT = new RetryBudget(0.2f, 10);
+
+    private static final float MAX_BALANCE = 100f; // 最多积累的令牌数
+
+    private final float ratio;
+    private final int minRetriesPerSecond;
+
+    private float balance;
+    private long currentSecond;
+    private int usedInSecond;
+
+    /**
+     * @param ratio               每个请求存入的令牌数, 即允许的重试数与请求数的比例.
+     * @param minRetriesPerSecond 令牌不足时每秒仍然允许的重试次数
+     */
+    public RetryBudget(float ratio, int minRetriesPerSecond) {
+        this.ratio = Math.max(0f, ratio);
+        this.minRetriesPerSecond = Math.max(0, minRetriesPerSecond);
+    }
+
+    /**
+     * 发出请求时调用
+     */
+    public synchronized void deposit() {
+        balance = Math.min(MAX_BALANCE, balance + ratio);
+    }
+
+    /**
+     * 重试前调用
+     *
+     * @return 预算不足时返回false
+     */
+    public synchronized boolean tryWithdraw() {
+        if (balance >= 1f) {
+            balance -= 1f;
+            return true;
+        }
+
+        long second = SystemClock.uptimeMillis() / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            usedInSecond = 0;
+        }
+        if (usedInSecond < minRetriesPerSecond) {
+            usedInSecond++;
+            return true;
+        }
+        return false;
+    }
+}
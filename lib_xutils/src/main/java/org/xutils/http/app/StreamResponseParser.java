@@ -0,0 +1,23 @@
+package org.xutils.http.app;
+
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * 支持流式转换的 {@link ResponseParser},
+ * 数据边下载边转换, 不需要先把整个响应读成字符串.
+ */
+public interface StreamResponseParser extends ResponseParser {
+
+    /**
+     * 从输入流转换为resultType类型的对象
+     *
+     * @param resultType  返回值类型(可能带有泛型信息)
+     * @param resultClass 返回值类型
+     * @param in          响应数据流, 由调用者负责关闭
+     * @param charset     {@link org.xutils.http.RequestParams#getCharset()}
+     * @return
+     * @throws Throwable
+     */
+    Object parse(Type resultType, Class<?> resultClass, InputStream in, String charset) throws Throwable;
+}
@@ -0,0 +1,47 @@
+package org.xutils.http.body;
+
+import org.xutils.common.util.IOUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 使用gzip压缩的请求体, 仅用于内容在内存中的请求体(StringBody, UrlEncodedParamsBody).
+ * 创建时完成压缩, 以便使用固定长度发送.
+ */
+public class GzipBody implements RequestBody {
+
+    private final RequestBody body;
+    private final byte[] content;
+
+    public GzipBody(RequestBody body) throws IOException {
+        this.body = body;
+        long length = body.getContentLength();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                length > 0 && length < Integer.MAX_VALUE ? (int) length : 1024);
+        body.writeTo(out);
+        this.content = IOUtil.gzip(out.toByteArray());
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.length;
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        body.setContentType(contentType);
+    }
+
+    @Override
+    public String getContentType() {
+        return body.getContentType();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(content);
+        out.flush();
+    }
+}
@@ -19,6 +19,9 @@ import java.io.OutputStream;
  */
 public class InputStreamBody implements ProgressBody {
 
+    // 每次写入的数据块大小, 接近socket发送缓冲区的大小, 减少写入和进度回调的次数.
+    /*package*/ static final int BUFFER_SIZE = 64 * 1024;
+
     private InputStream content;
     private String contentType;
 
@@ -63,7 +66,7 @@ public class InputStreamBody implements ProgressBody {
             throw new Callback.CancelledException("upload stopped!");
         }
 
-        byte[] buffer = new byte[1024];
+        byte[] buffer = new byte[BUFFER_SIZE];
         try {
             int len = 0;
             while ((len = content.read(buffer)) != -1) {
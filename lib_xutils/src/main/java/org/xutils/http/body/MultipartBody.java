@@ -8,14 +8,15 @@ import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.KeyValue;
 import org.xutils.http.ProgressHandler;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Author: wyouflf
@@ -30,24 +31,27 @@ public class MultipartBody implements ProgressBody {
     private String contentType; // multipart/subtype; boundary=xxx...
     private String charset = "UTF-8";
 
-    private List<KeyValue> multipartParams;
+    private List<Part> parts;
     private long total = 0;
     private long current = 0;
 
-    public MultipartBody(List<KeyValue> multipartParams, String charset) {
+    public MultipartBody(List<KeyValue> multipartParams, String charset) throws IOException {
         if (!TextUtils.isEmpty(charset)) {
             this.charset = charset;
         }
-        this.multipartParams = multipartParams;
         generateContentType();
 
-        // calc total
-        CounterOutputStream counter = new CounterOutputStream();
-        try {
-            this.writeTo(counter);
-            this.total = counter.total.get();
-        } catch (IOException e) {
-            this.total = -1;
+        // 根据每一项的头信息和内容长度计算总长度, 不需要预先写一遍.
+        this.parts = buildParts(multipartParams);
+        this.total = TWO_DASHES_BYTES.length * 2 + BOUNDARY_PREFIX_BYTES.length
+                + boundaryPostfixBytes.length + END_BYTES.length;
+        for (Part part : parts) {
+            long length = part.getLength();
+            if (length < 0) {
+                this.total = -1;
+                break;
+            }
+            this.total += length;
         }
     }
 
@@ -88,17 +92,34 @@ public class MultipartBody implements ProgressBody {
 
     @Override
     public void writeTo(OutputStream out) throws IOException {
+        current = 0;
 
         if (callBackHandler != null && !callBackHandler.updateProgress(total, current, true)) {
             throw new Callback.CancelledException("upload stopped!");
         }
 
-        for (KeyValue kv : multipartParams) {
-            String name = kv.key;
-            Object value = kv.value;
-            if (!TextUtils.isEmpty(name) && value != null) {
-                writeEntry(out, name, value);
+        byte[] buffer = null;
+        for (Part part : parts) {
+            out.write(part.header);
+            if (part.value instanceof File) {
+                if (buffer == null) {
+                    buffer = new byte[InputStreamBody.BUFFER_SIZE];
+                }
+                writeStreamAndCloseIn(out, new FileInputStream((File) part.value), buffer);
+            } else if (part.value instanceof InputStream) {
+                if (buffer == null) {
+                    buffer = new byte[InputStreamBody.BUFFER_SIZE];
+                }
+                writeStreamAndCloseIn(out, (InputStream) part.value, buffer);
+            } else {
+                byte[] content = (byte[]) part.value;
+                out.write(content);
+                current += content.length;
+                if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
+                    throw new Callback.CancelledException("upload stopped!");
+                }
             }
+            out.write(END_BYTES);
         }
         writeLine(out, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes, TWO_DASHES_BYTES);
         out.flush();
@@ -108,17 +129,23 @@ public class MultipartBody implements ProgressBody {
         }
     }
 
+    private List<Part> buildParts(List<KeyValue> multipartParams) throws IOException {
+        List<Part> result = new ArrayList<Part>(multipartParams == null ? 0 : multipartParams.size());
+        if (multipartParams == null) return result;
+        for (KeyValue kv : multipartParams) {
+            String name = kv.key;
+            Object value = kv.value;
+            if (!TextUtils.isEmpty(name) && value != null) {
+                result.add(buildPart(name, value));
+            }
+        }
+        return result;
+    }
+
     /**
-     * 写入multipart中的一项
-     *
-     * @param out
-     * @param name
-     * @param value
-     * @throws IOException
+     * 生成multipart中一项的头信息, 内容为文件, 流或byte[].
      */
-    private void writeEntry(OutputStream out, String name, Object value) throws IOException {
-        writeLine(out, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes);
-
+    private Part buildPart(String name, Object value) throws IOException {
         String fileName = "";
         String contentType = null;
         if (value instanceof BodyItemWrapper) {
@@ -136,32 +163,26 @@ public class MultipartBody implements ProgressBody {
             if (TextUtils.isEmpty(contentType)) {
                 contentType = FileBody.getFileContentType(file);
             }
-            writeLine(out, buildContentDisposition(name, fileName, charset));
-            writeLine(out, buildContentType(value, contentType, charset));
-            writeLine(out); // 内容前空一行
-            writeFile(out, file);
-            writeLine(out);
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(256);
+        writeLine(header, TWO_DASHES_BYTES, BOUNDARY_PREFIX_BYTES, boundaryPostfixBytes);
+        writeLine(header, buildContentDisposition(name, fileName, charset));
+        writeLine(header, buildContentType(value, contentType, charset));
+        writeLine(header); // 内容前空一行
+
+        long contentLength;
+        if (value instanceof File) {
+            contentLength = ((File) value).length();
+        } else if (value instanceof InputStream) {
+            contentLength = InputStreamBody.getInputStreamLength((InputStream) value);
         } else {
-            writeLine(out, buildContentDisposition(name, fileName, charset));
-            writeLine(out, buildContentType(value, contentType, charset));
-            writeLine(out); // 内容前空一行
-            if (value instanceof InputStream) {
-                writeStreamAndCloseIn(out, (InputStream) value);
-                writeLine(out);
-            } else {
-                byte[] content;
-                if (value instanceof byte[]) {
-                    content = (byte[]) value;
-                } else {
-                    content = String.valueOf(value).getBytes(charset);
-                }
-                writeLine(out, content);
-                current += content.length;
-                if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
-                    throw new Callback.CancelledException("upload stopped!");
-                }
+            if (!(value instanceof byte[])) {
+                value = String.valueOf(value).getBytes(charset);
             }
+            contentLength = ((byte[]) value).length;
         }
+        return new Part(header.toByteArray(), value, contentLength);
     }
 
     private void writeLine(OutputStream out, byte[]... bs) throws IOException {
@@ -173,31 +194,18 @@ public class MultipartBody implements ProgressBody {
         out.write(END_BYTES);
     }
 
-    private void writeFile(OutputStream out, File file) throws IOException {
-        if (out instanceof CounterOutputStream) {
-            ((CounterOutputStream) out).addFile(file);
-        } else {
-            writeStreamAndCloseIn(out, new FileInputStream(file));
-        }
-    }
-
-    private void writeStreamAndCloseIn(OutputStream out, InputStream in) throws IOException {
-        if (out instanceof CounterOutputStream) {
-            ((CounterOutputStream) out).addStream(in);
-        } else {
-            try {
-                int len;
-                byte[] buf = new byte[1024];
-                while ((len = in.read(buf)) >= 0) {
-                    out.write(buf, 0, len);
-                    current += len;
-                    if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
-                        throw new Callback.CancelledException("upload stopped!");
-                    }
+    private void writeStreamAndCloseIn(OutputStream out, InputStream in, byte[] buffer) throws IOException {
+        try {
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+                current += len;
+                if (callBackHandler != null && !callBackHandler.updateProgress(total, current, false)) {
+                    throw new Callback.CancelledException("upload stopped!");
                 }
-            } finally {
-                IOUtil.closeQuietly(in);
             }
+        } finally {
+            IOUtil.closeQuietly(in);
         }
     }
 
@@ -225,44 +233,23 @@ public class MultipartBody implements ProgressBody {
         return result.toString().getBytes(charset);
     }
 
-    private class CounterOutputStream extends OutputStream {
-
-        final AtomicLong total = new AtomicLong(0L);
-
-        public CounterOutputStream() {
-        }
-
-        public void addFile(File file) {
-            if (total.get() == -1L) return;
-            total.addAndGet(file.length());
-        }
-
-        public void addStream(InputStream inputStream) {
-            if (total.get() == -1L) return;
-            long length = InputStreamBody.getInputStreamLength(inputStream);
-            if (length > 0) {
-                total.addAndGet(length);
-            } else {
-                total.set(-1L);
-            }
-        }
-
-        @Override
-        public void write(int oneByte) throws IOException {
-            if (total.get() == -1L) return;
-            total.incrementAndGet();
-        }
+    private static final class Part {
+        final byte[] header;
+        final Object value; // File, InputStream or byte[]
+        final long contentLength;
 
-        @Override
-        public void write(byte[] buffer) throws IOException {
-            if (total.get() == -1L) return;
-            total.addAndGet(buffer.length);
+        Part(byte[] header, Object value, long contentLength) {
+            this.header = header;
+            this.value = value;
+            this.contentLength = contentLength;
         }
 
-        @Override
-        public void write(byte[] buffer, int offset, int count) throws IOException {
-            if (total.get() == -1L) return;
-            total.addAndGet(count);
+        /**
+         * 头信息, 内容和结尾换行的总长度, 内容长度未知时返回-1.
+         */
+        long getLength() {
+            if (contentLength < 0) return -1;
+            return header.length + contentLength + END_BYTES.length;
         }
     }
 }
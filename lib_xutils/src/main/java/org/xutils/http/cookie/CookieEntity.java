@@ -3,6 +3,7 @@ package org.xutils.http.cookie;
 import android.text.TextUtils;
 
 import org.xutils.db.annotation.Column;
+import org.xutils.db.annotation.Index;
 import org.xutils.db.annotation.Table;
 
 import java.net.HttpCookie;
@@ -20,33 +21,35 @@ import java.net.URI;
     private static final long MAX_EXPIRY = System.currentTimeMillis() + 1000L * 60L * 60L * 24L * 30L * 12L * 100L;
 
     @Column(name = "id", isId = true)
-    private long id;
+    /*package*/ long id;
 
+    @Index
     @Column(name = "uri")
-    private String uri; // cookie add by this uri.
+    /*package*/ String uri; // cookie add by this uri.
 
     @Column(name = "name")
-    private String name;
+    /*package*/ String name;
     @Column(name = "value")
-    private String value;
+    /*package*/ String value;
     @Column(name = "comment")
-    private String comment;
+    /*package*/ String comment;
     @Column(name = "commentURL")
-    private String commentURL;
+    /*package*/ String commentURL;
     @Column(name = "discard")
-    private boolean discard;
+    /*package*/ boolean discard;
+    @Index
     @Column(name = "domain")
-    private String domain;
+    /*package*/ String domain;
     @Column(name = "expiry")
-    private long expiry = MAX_EXPIRY;
+    /*package*/ long expiry = MAX_EXPIRY;
     @Column(name = "path")
-    private String path;
+    /*package*/ String path;
     @Column(name = "portList")
-    private String portList;
+    /*package*/ String portList;
     @Column(name = "secure")
-    private boolean secure;
+    /*package*/ boolean secure;
     @Column(name = "version")
-    private int version = 1;
+    /*package*/ int version = 1;
 
     public CookieEntity() {
     }
@@ -0,0 +1,183 @@
+package org.xutils.http.cookie;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存中的cookie索引: domain -> path trie, 以及 uri -> cookie.
+ * 读取不加锁, 修改在同步块中进行.
+ * 匹配规则与 DbCookieStore 原来的数据库查询相同:
+ * (domain为host或host的上一级域名) 并且 (path为请求path或它的上级目录, "/"或null), 或者uri相同.
+ */
+/*package*/ final class CookieIndex {
+
+    // key: name|domain|path
+    private final ConcurrentHashMap<String, CookieEntity> entryMap =
+            new ConcurrentHashMap<String, CookieEntity>();
+    private final ConcurrentHashMap<String, PathNode> domainMap =
+            new ConcurrentHashMap<String, PathNode>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, CookieEntity>> uriMap =
+            new ConcurrentHashMap<String, ConcurrentHashMap<String, CookieEntity>>();
+
+    public synchronized void put(CookieEntity entity) {
+        String key = getKey(entity);
+        CookieEntity old = entryMap.put(key, entity);
+        if (old != null) {
+            unlink(key, old);
+        }
+
+        String domain = entity.domain == null ? "" : entity.domain;
+        PathNode root = domainMap.get(domain);
+        if (root == null) {
+            root = new PathNode();
+            domainMap.put(domain, root);
+        }
+        getNode(root, entity.path, true).cookies.put(key, entity);
+
+        if (entity.uri != null) {
+            ConcurrentHashMap<String, CookieEntity> uriCookies = uriMap.get(entity.uri);
+            if (uriCookies == null) {
+                uriCookies = new ConcurrentHashMap<String, CookieEntity>();
+                uriMap.put(entity.uri, uriCookies);
+            }
+            uriCookies.put(key, entity);
+        }
+    }
+
+    public synchronized void remove(CookieEntity entity) {
+        String key = getKey(entity);
+        if (entryMap.remove(key) != null) {
+            unlink(key, entity);
+        }
+    }
+
+    public synchronized void clear() {
+        entryMap.clear();
+        domainMap.clear();
+        uriMap.clear();
+    }
+
+    public int size() {
+        return entryMap.size();
+    }
+
+    public Collection<CookieEntity> getAll() {
+        return entryMap.values();
+    }
+
+    public Set<String> getUris() {
+        return uriMap.keySet();
+    }
+
+    /**
+     * @param host   为空时不限制domain
+     * @param domain host的上一级域名, 如: ".example.com", 可以为空.
+     * @param path   为空时不限制path
+     * @param uri
+     */
+    public List<CookieEntity> find(String host, String domain, String path, String uri) {
+        Map<String, CookieEntity> result = new LinkedHashMap<String, CookieEntity>();
+
+        List<PathNode> roots = new ArrayList<PathNode>(2);
+        if (TextUtils.isEmpty(host)) {
+            roots.addAll(domainMap.values());
+        } else {
+            PathNode root = domainMap.get(host);
+            if (root != null) roots.add(root);
+            if (!TextUtils.isEmpty(domain)) {
+                root = domainMap.get(domain);
+                if (root != null) roots.add(root);
+            }
+        }
+
+        for (PathNode root : roots) {
+            if (TextUtils.isEmpty(path)) {
+                collectAll(root, result);
+            } else {
+                result.putAll(root.cookies);
+                // 与getNode相同的分段方式, 保留末尾的空段: "/app/" -> "", "app", "", 与原来的 path = "/app/" 条件相同.
+                String[] segments = path.split("/", -1);
+                PathNode node = root;
+                for (int i = 0; i < segments.length; i++) {
+                    node = node.children.get(segments[i]);
+                    if (node == null) break;
+                    // 跳过以"/"开头的path的第一个空段
+                    if (i == 0 && segments[i].length() == 0) continue;
+                    result.putAll(node.cookies);
+                }
+            }
+        }
+
+        if (uri != null) {
+            ConcurrentHashMap<String, CookieEntity> uriCookies = uriMap.get(uri);
+            if (uriCookies != null) {
+                result.putAll(uriCookies);
+            }
+        }
+
+        return new ArrayList<CookieEntity>(result.values());
+    }
+
+    private void unlink(String key, CookieEntity entity) {
+        PathNode root = domainMap.get(entity.domain == null ? "" : entity.domain);
+        if (root != null) {
+            PathNode node = getNode(root, entity.path, false);
+            if (node != null) {
+                node.cookies.remove(key);
+            }
+        }
+        if (entity.uri != null) {
+            ConcurrentHashMap<String, CookieEntity> uriCookies = uriMap.get(entity.uri);
+            if (uriCookies != null) {
+                uriCookies.remove(key);
+                if (uriCookies.isEmpty()) {
+                    uriMap.remove(entity.uri);
+                }
+            }
+        }
+    }
+
+    /**
+     * path为null或"/"的cookie保存在根节点,
+     * 其他path按"/"分段保存在对应的子节点.
+     */
+    private static PathNode getNode(PathNode root, String path, boolean create) {
+        if (path == null || "/".equals(path)) {
+            return root;
+        }
+        PathNode node = root;
+        for (String segment : path.split("/", -1)) {
+            PathNode child = node.children.get(segment);
+            if (child == null) {
+                if (!create) return null;
+                child = new PathNode();
+                node.children.put(segment, child);
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private static void collectAll(PathNode node, Map<String, CookieEntity> result) {
+        result.putAll(node.cookies);
+        for (PathNode child : node.children.values()) {
+            collectAll(child, result);
+        }
+    }
+
+    private static String getKey(CookieEntity entity) {
+        return entity.name + "|" + entity.domain + "|" + entity.path;
+    }
+
+    private static final class PathNode {
+        final ConcurrentHashMap<String, PathNode> children = new ConcurrentHashMap<String, PathNode>(2);
+        final ConcurrentHashMap<String, CookieEntity> cookies = new ConcurrentHashMap<String, CookieEntity>(2);
+    }
+}
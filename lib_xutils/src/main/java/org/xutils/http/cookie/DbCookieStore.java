@@ -6,9 +6,9 @@ import org.xutils.DbManager;
 import org.xutils.common.task.PriorityExecutor;
 import org.xutils.common.util.LogUtil;
 import org.xutils.config.DbConfigs;
-import org.xutils.db.Selector;
+import org.xutils.db.WriteBehindQueue;
 import org.xutils.db.sqlite.WhereBuilder;
-import org.xutils.db.table.DbModel;
+import org.xutils.ex.DbException;
 import org.xutils.x;
 
 import java.net.CookieStore;
@@ -21,12 +21,15 @@ import java.util.concurrent.Executor;
 /**
  * Created by wyouflf on 15/8/20.
  * 基于数据库的CookieStore实现.
+ * 读取使用内存中的 CookieIndex, 修改通过 WriteBehindQueue 在后台批量写入数据库.
  */
 public enum DbCookieStore implements CookieStore {
 
     INSTANCE;
 
     private final DbManager db;
+    private final WriteBehindQueue writeQueue;
+    private final CookieIndex cookieIndex = new CookieIndex();
     private final Executor trimExecutor = new PriorityExecutor(1, true);
     private static final int LIMIT_COUNT = 5000; // 限制最多5000条数据
 
@@ -36,9 +39,31 @@ public enum DbCookieStore implements CookieStore {
 
     DbCookieStore() {
         db = x.getDb(DbConfigs.COOKIE.getConfig());
+        writeQueue = db.getWriteBehindQueue();
+        loadCookies();
         trimSize();
     }
 
+    /**
+     * 加载数据库中的cookie到内存索引, 之后的读取都在内存中进行.
+     * 上次运行留下的会话cookie(expiry == -1)不再加载.
+     */
+    private void loadCookies() {
+        try {
+            List<CookieEntity> cookieEntityList = db.selector(CookieEntity.class)
+                    .where("expiry", "!=", -1L).findAll();
+            if (cookieEntityList != null) {
+                for (CookieEntity cookieEntity : cookieEntityList) {
+                    if (!cookieEntity.isExpired()) {
+                        cookieIndex.put(cookieEntity);
+                    }
+                }
+            }
+        } catch (Throwable ex) {
+            LogUtil.e(ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Add one cookie into cookie store.
      */
@@ -50,8 +75,10 @@ public enum DbCookieStore implements CookieStore {
 
         uri = getEffectiveURI(uri);
 
+        CookieEntity cookieEntity = new CookieEntity(uri, cookie);
+        cookieIndex.put(cookieEntity);
         try {
-            db.replace(new CookieEntity(uri, cookie));
+            writeQueue.replace(cookieEntity, null);
         } catch (Throwable ex) {
             LogUtil.e(ex.getMessage(), ex);
         }
@@ -79,49 +106,23 @@ public enum DbCookieStore implements CookieStore {
         List<HttpCookie> rt = new ArrayList<HttpCookie>();
 
         try {
-
-            Selector<CookieEntity> selector = db.selector(CookieEntity.class);
-
-            WhereBuilder where = WhereBuilder.b();
-
             String host = uri.getHost();
+            String domain = null;
             if (!TextUtils.isEmpty(host)) {
-                WhereBuilder subWhere = WhereBuilder.b("domain", "=", host);
                 int lastDot = host.lastIndexOf(".");
                 if (lastDot > 1) {
                     lastDot = host.lastIndexOf(".", lastDot - 1);
                     if (lastDot > 0) {
-                        String domain = host.substring(lastDot, host.length());
-                        if (!TextUtils.isEmpty(domain)) {
-                            subWhere.or("domain", "=", domain);
-                        }
+                        domain = host.substring(lastDot, host.length());
                     }
                 }
-                where.and(subWhere);
             }
 
-            String path = uri.getPath();
-            if (!TextUtils.isEmpty(path)) {
-                WhereBuilder subWhere = WhereBuilder.b("path", "=", path)
-                        .or("path", "=", "/").or("path", "=", null);
-                int lastSplit = path.lastIndexOf("/");
-                while (lastSplit > 0) {
-                    path = path.substring(0, lastSplit);
-                    subWhere.or("path", "=", path);
-                    lastSplit = path.lastIndexOf("/");
-                }
-
-                where.and(subWhere);
-            }
-
-            where.or("uri", "=", uri.toString());
-
-            List<CookieEntity> cookieEntityList = selector.where(where).findAll();
-            if (cookieEntityList != null) {
-                for (CookieEntity cookieEntity : cookieEntityList) {
-                    if (!cookieEntity.isExpired()) {
-                        rt.add(cookieEntity.toHttpCookie());
-                    }
+            List<CookieEntity> cookieEntityList =
+                    cookieIndex.find(host, domain, uri.getPath(), uri.toString());
+            for (CookieEntity cookieEntity : cookieEntityList) {
+                if (!cookieEntity.isExpired()) {
+                    rt.add(cookieEntity.toHttpCookie());
                 }
             }
         } catch (Throwable ex) {
@@ -137,20 +138,12 @@ public enum DbCookieStore implements CookieStore {
     public List<HttpCookie> getCookies() {
         List<HttpCookie> rt = new ArrayList<HttpCookie>();
 
-        try {
-            List<CookieEntity> cookieEntityList = db.findAll(CookieEntity.class);
-            if (cookieEntityList != null) {
-                for (CookieEntity cookieEntity : cookieEntityList) {
-                    if (!cookieEntity.isExpired()) {
-                        rt.add(cookieEntity.toHttpCookie());
-                    }
-                }
+        for (CookieEntity cookieEntity : cookieIndex.getAll()) {
+            if (!cookieEntity.isExpired()) {
+                rt.add(cookieEntity.toHttpCookie());
             }
-        } catch (Throwable ex) {
-            LogUtil.e(ex.getMessage(), ex);
         }
 
-
         return rt;
     }
 
@@ -162,28 +155,14 @@ public enum DbCookieStore implements CookieStore {
     public List<URI> getURIs() {
         List<URI> uris = new ArrayList<URI>();
 
-        try {
-            List<DbModel> uriList =
-                    db.selector(CookieEntity.class).select("uri").findAll();
-            if (uriList != null) {
-                for (DbModel model : uriList) {
-                    String uri = model.getString("uri");
-                    if (!TextUtils.isEmpty(uri)) {
-                        try {
-                            uris.add(new URI(uri));
-                        } catch (Throwable ex) {
-                            LogUtil.e(ex.getMessage(), ex);
-                            try {
-                                db.delete(CookieEntity.class, WhereBuilder.b("uri", "=", uri));
-                            } catch (Throwable ignored) {
-                                LogUtil.e(ignored.getMessage(), ignored);
-                            }
-                        }
-                    }
+        for (String uri : cookieIndex.getUris()) {
+            if (!TextUtils.isEmpty(uri)) {
+                try {
+                    uris.add(new URI(uri));
+                } catch (Throwable ex) {
+                    LogUtil.e(ex.getMessage(), ex);
                 }
             }
-        } catch (Throwable ex) {
-            LogUtil.e(ex.getMessage(), ex);
         }
 
         return uris;
@@ -201,7 +180,8 @@ public enum DbCookieStore implements CookieStore {
 
         boolean modified = false;
         try {
-            WhereBuilder where = WhereBuilder.b("name", "=", cookie.getName());
+            String name = cookie.getName();
+            final WhereBuilder where = WhereBuilder.b("name", "=", name);
 
             String domain = cookie.getDomain();
             if (!TextUtils.isEmpty(domain)) {
@@ -216,7 +196,20 @@ public enum DbCookieStore implements CookieStore {
                 where.and("path", "=", path);
             }
 
-            db.delete(CookieEntity.class, where);
+            for (CookieEntity cookieEntity : cookieIndex.getAll()) {
+                if ((name == null ? cookieEntity.name == null : name.equals(cookieEntity.name))
+                        && (TextUtils.isEmpty(domain) || domain.equals(cookieEntity.domain))
+                        && (TextUtils.isEmpty(path) || path.equals(cookieEntity.path))) {
+                    cookieIndex.remove(cookieEntity);
+                }
+            }
+
+            writeQueue.submit(new DbManager.WriteOperation() {
+                @Override
+                public void execute(DbManager db) throws DbException {
+                    db.delete(CookieEntity.class, where);
+                }
+            }, null);
 
             modified = true;
         } catch (Throwable ex) {
@@ -232,8 +225,14 @@ public enum DbCookieStore implements CookieStore {
      */
     @Override
     public boolean removeAll() {
+        cookieIndex.clear();
         try {
-            db.delete(CookieEntity.class);
+            writeQueue.submit(new DbManager.WriteOperation() {
+                @Override
+                public void execute(DbManager db) throws DbException {
+                    db.delete(CookieEntity.class);
+                }
+            }, null);
         } catch (Throwable ex) {
             LogUtil.e(ex.getMessage(), ex);
         }
@@ -263,6 +262,11 @@ public enum DbCookieStore implements CookieStore {
             db.delete(CookieEntity.class, WhereBuilder
                     .b("expiry", "<", System.currentTimeMillis())
                     .and("expiry", "!=", -1L));
+            for (CookieEntity cookieEntity : cookieIndex.getAll()) {
+                if (cookieEntity.isExpired()) {
+                    cookieIndex.remove(cookieEntity);
+                }
+            }
         } catch (Throwable ex) {
             LogUtil.e(ex.getMessage(), ex);
         }
@@ -283,6 +287,9 @@ public enum DbCookieStore implements CookieStore {
                                 .limit(count - LIMIT_COUNT).findAll();
                         if (rmList != null) {
                             db.delete(rmList);
+                            for (CookieEntity cookieEntity : rmList) {
+                                cookieIndex.remove(cookieEntity);
+                            }
                         }
                     }
                 } catch (Throwable ex) {
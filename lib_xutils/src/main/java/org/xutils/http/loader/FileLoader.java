@@ -1,11 +1,13 @@
 package org.xutils.http.loader;
 
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import org.xutils.cache.DiskCacheEntity;
 import org.xutils.cache.DiskCacheFile;
 import org.xutils.cache.LruDiskCache;
 import org.xutils.common.Callback;
+import org.xutils.common.util.FileUtil;
 import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.LogUtil;
 import org.xutils.common.util.ProcessLock;
@@ -23,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Date;
 
@@ -37,6 +40,10 @@ import java.util.Date;
  * 1. 要下载的目标文件不存在或小于 CHECK_SIZE 时删除目标文件, 重新下载.
  * 2. 若文件存在且大于 CHECK_SIZE, range = fileLen - CHECK_SIZE , 校验check_buffer, 相同: 继续下载;
  * 不相同: 删掉目标文件, 并抛出RuntimeException(HttpRetryHandler会使下载重新开始).
+ * 分段下载策略(RequestParams#getDownloadSegmentCount() > 1):
+ * 1. 新下载的文件足够大且服务器支持Range时, 由 SegmentedDownload 分段并行下载,
+ * 主请求只读取第一段, 其他段使用新的Range请求.
+ * 2. 存在分段记录时, 主请求从第一个未完成的段继续, 文件长度变化时删掉目标文件并重新下载.
  */
 public class FileLoader extends Loader<File> {
 
@@ -50,6 +57,7 @@ public class FileLoader extends Loader<File> {
     private String responseFileName;
 
     private DiskCacheFile diskCacheFile;
+    private SegmentedDownload segmentedDownload;
 
     @Override
     public Loader<File> newInstance() {
@@ -125,26 +133,30 @@ public class FileLoader extends Loader<File> {
                 throw new Callback.CancelledException("download stopped!");
             }
 
-            byte[] tmp = new byte[4096];
-            int len;
-            while ((len = bis.read(tmp)) != -1) {
-
-                // 防止父文件夹被其他进程删除, 继续写入时造成父文件夹变为0字节文件的问题.
-                if (!targetFile.getParentFile().exists()) {
-                    targetFile.getParentFile().mkdirs();
-                    throw new IOException("parent be deleted!");
-                }
+            if (in instanceof FileInputStream) {
+                current = transferFile((FileInputStream) in, fileOutputStream, total, current);
+            } else {
+                byte[] tmp = new byte[4096];
+                int len;
+                while ((len = bis.read(tmp)) != -1) {
+
+                    // 防止父文件夹被其他进程删除, 继续写入时造成父文件夹变为0字节文件的问题.
+                    if (!targetFile.getParentFile().exists()) {
+                        targetFile.getParentFile().mkdirs();
+                        throw new IOException("parent be deleted!");
+                    }
 
-                bos.write(tmp, 0, len);
-                current += len;
-                if (progressHandler != null) {
-                    if (!progressHandler.updateProgress(total, current, false)) {
-                        bos.flush();
-                        throw new Callback.CancelledException("download stopped!");
+                    bos.write(tmp, 0, len);
+                    current += len;
+                    if (progressHandler != null) {
+                        if (!progressHandler.updateProgress(total, current, false)) {
+                            bos.flush();
+                            throw new Callback.CancelledException("download stopped!");
+                        }
                     }
                 }
+                bos.flush();
             }
-            bos.flush();
             // 处理[下载逻辑2.a](见文件头doc)
             if (diskCacheFile != null) {
                 targetFile = diskCacheFile.commit();
@@ -161,6 +173,30 @@ public class FileLoader extends Loader<File> {
         return autoRename(targetFile);
     }
 
+    /**
+     * 本地文件使用 FileChannel 复制, 数据不经过java堆, 每复制一块回调一次进度.
+     */
+    private long transferFile(FileInputStream in, FileOutputStream out, long total, long current) throws IOException {
+        FileChannel inChannel = in.getChannel();
+        FileChannel outChannel = out.getChannel();
+        long start = current;
+        long startTime = SystemClock.uptimeMillis();
+        long startCpuTime = SystemClock.currentThreadTimeMillis();
+
+        long len;
+        while ((len = FileUtil.transfer(inChannel, outChannel, FileUtil.TRANSFER_CHUNK_SIZE)) > 0) {
+            current += len;
+            if (progressHandler != null && !progressHandler.updateProgress(total, current, false)) {
+                throw new Callback.CancelledException("download stopped!");
+            }
+        }
+
+        long cost = SystemClock.uptimeMillis() - startTime;
+        LogUtil.d("transfer file: " + (current - start) + " bytes, " + cost + "ms, cpu "
+                + (SystemClock.currentThreadTimeMillis() - startCpuTime) + "ms");
+        return current;
+    }
+
     @Override
     public File load(final UriRequest request) throws Throwable {
         ProcessLock processLock = null;
@@ -193,8 +229,17 @@ public class FileLoader extends Loader<File> {
             }
 
             params = request.getParams();
-            {// 处理[断点逻辑1](见文件头doc)
-                long range = 0;
+            long range = 0;
+            segmentedDownload = null;
+            if (diskCacheFile == null && isAutoResume && params.getDownloadSegmentCount() > 1) {
+                segmentedDownload = SegmentedDownload.load(new File(tempSaveFilePath));
+            } else {
+                SegmentedDownload.deleteRecord(new File(tempSaveFilePath));
+            }
+            if (segmentedDownload != null) {
+                // 处理[分段下载策略2](见文件头doc)
+                params.setHeader("RANGE", segmentedDownload.getMainRange());
+            } else {// 处理[断点逻辑1](见文件头doc)
                 if (isAutoResume) {
                     File tempFile = new File(tempSaveFilePath);
                     long fileLen = tempFile.length();
@@ -223,6 +268,20 @@ public class FileLoader extends Loader<File> {
                 isAutoResume = isSupportRange(request);
             }
 
+            if (segmentedDownload != null) {
+                if (!segmentedDownload.checkResponse(request)) {
+                    File tempFile = new File(tempSaveFilePath);
+                    SegmentedDownload.deleteRecord(tempFile);
+                    IOUtil.deleteFileOrDir(tempFile);
+                    throw new RuntimeException("need retry");
+                }
+            } else if (diskCacheFile == null && isAutoResume && range == 0
+                    && params.getDownloadSegmentCount() > 1) {
+                // 处理[分段下载策略1](见文件头doc)
+                segmentedDownload = SegmentedDownload.create(
+                        new File(tempSaveFilePath), contentLength, params.getDownloadSegmentCount());
+            }
+
             if (progressHandler != null && !progressHandler.updateProgress(0, 0, false)) {
                 throw new Callback.CancelledException("download stopped!");
             }
@@ -234,9 +293,15 @@ public class FileLoader extends Loader<File> {
                 entity.setExpires(request.getExpiration());
                 entity.setLastModify(new Date(request.getLastModified()));
             }
-            result = this.load(request.getInputStream());
+            if (segmentedDownload != null) {
+                segmentedDownload.download(request, params, progressHandler);
+                result = autoRename(new File(tempSaveFilePath));
+            } else {
+                result = this.load(request.getInputStream());
+            }
         } catch (HttpException httpException) {
             if (httpException.getCode() == 416) {
+                SegmentedDownload.deleteRecord(new File(tempSaveFilePath));
                 if (diskCacheFile != null) {
                     result = diskCacheFile.commit();
                 } else {
@@ -286,7 +351,7 @@ public class FileLoader extends Loader<File> {
             return loadedFile.renameTo(newFile) ? newFile : loadedFile;
         } else if (!saveFilePath.equals(tempSaveFilePath)) {
             File newFile = new File(saveFilePath);
-            return loadedFile.renameTo(newFile) ? newFile : loadedFile;
+            return FileUtil.move(loadedFile, newFile) ? newFile : loadedFile;
         } else {
             return loadedFile;
         }
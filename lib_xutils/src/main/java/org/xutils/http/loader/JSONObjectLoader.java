@@ -4,7 +4,7 @@ import android.text.TextUtils;
 
 import org.json.JSONObject;
 import org.xutils.cache.DiskCacheEntity;
-import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
 import org.xutils.http.RequestParams;
 import org.xutils.http.request.UriRequest;
 
@@ -18,6 +18,7 @@ import java.io.InputStream;
 
     private String charset = "UTF-8";
     private String resultStr = null;
+    private TeeInputStream cacheStream = null;
 
     @Override
     public Loader<JSONObject> newInstance() {
@@ -36,8 +37,13 @@ import java.io.InputStream;
 
     @Override
     public JSONObject load(final InputStream in) throws Throwable {
-        resultStr = IOUtil.readStr(in, charset);
-        return new JSONObject(resultStr);
+        resultStr = null;
+        cacheStream = null;
+        InputStream source = in;
+        if (cacheEnabled) {
+            source = cacheStream = new TeeInputStream(in);
+        }
+        return JsonStreamReader.readObject(JsonStreamReader.newReader(source, charset));
     }
 
     @Override
@@ -60,6 +66,19 @@ import java.io.InputStream;
 
     @Override
     public void save2Cache(UriRequest request) {
-        saveStringCache(request, resultStr);
+        saveStringCache(request, getCacheText());
+    }
+
+    @Override
+    public String getCacheText() {
+        if (resultStr == null && cacheStream != null) {
+            try {
+                resultStr = cacheStream.toString(charset);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+            cacheStream = null;
+        }
+        return resultStr;
     }
 }
@@ -0,0 +1,93 @@
+package org.xutils.http.loader;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * 使用 JsonReader 从输入流逐个token读取 JSONObject/JSONArray,
+ * 避免先把整个响应读成字符串.
+ */
+/*package*/ final class JsonStreamReader {
+
+    private JsonStreamReader() {
+    }
+
+    public static JsonReader newReader(InputStream in, String charset) throws IOException {
+        if (!(in instanceof BufferedInputStream)) {
+            in = new BufferedInputStream(in);
+        }
+        JsonReader reader = new JsonReader(new InputStreamReader(in, charset));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    public static JSONObject readObject(JsonReader reader) throws IOException, JSONException {
+        JSONObject result = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            result.put(name, readValue(reader));
+        }
+        reader.endObject();
+        return result;
+    }
+
+    public static JSONArray readArray(JsonReader reader) throws IOException, JSONException {
+        JSONArray result = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            result.put(readValue(reader));
+        }
+        reader.endArray();
+        return result;
+    }
+
+    public static Object readValue(JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return readNumber(reader.nextString());
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * 与 JSONTokener 一致: 整数优先转换为Integer/Long, 其他转换为Double.
+     */
+    private static Object readNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        try {
+            return Double.valueOf(number);
+        } catch (NumberFormatException ignored) {
+            return number;
+        }
+    }
+}
@@ -20,6 +20,7 @@ public abstract class Loader<T> {
 
     protected RequestParams params;
     protected ProgressHandler progressHandler;
+    protected boolean cacheEnabled = true;
 
     public void setParams(final RequestParams params) {
         this.params = params;
@@ -29,6 +30,13 @@ public abstract class Loader<T> {
         this.progressHandler = callbackHandler;
     }
 
+    /**
+     * 结果是否会被写入缓存, 不写入时流式加载的数据无需保留副本.
+     */
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
     protected void saveStringCache(UriRequest request, String resultStr) {
         if (!TextUtils.isEmpty(resultStr)) {
             DiskCacheEntity entity = new DiskCacheEntity();
@@ -38,7 +46,8 @@ public abstract class Loader<T> {
             entity.setExpires(request.getExpiration());
             entity.setLastModify(new Date(request.getLastModified()));
             entity.setTextContent(resultStr);
-            LruDiskCache.getDiskCache(request.getParams().getCacheDirName()).put(entity);
+            LruDiskCache.getDiskCache(request.getParams().getCacheDirName())
+                    .put(entity, request.getParams().isCacheCompressed());
         }
     }
 
@@ -51,4 +60,11 @@ public abstract class Loader<T> {
     public abstract T loadFromCache(final DiskCacheEntity cacheEntity) throws Throwable;
 
     public abstract void save2Cache(final UriRequest request);
+
+    /**
+     * 将要保存到缓存的文本, 不使用文本缓存时返回null.
+     */
+    public String getCacheText() {
+        return null;
+    }
 }
@@ -4,10 +4,12 @@ import android.text.TextUtils;
 
 import org.xutils.cache.DiskCacheEntity;
 import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
 import org.xutils.common.util.ParameterizedTypeUtil;
 import org.xutils.http.RequestParams;
 import org.xutils.http.annotation.HttpResponse;
 import org.xutils.http.app.ResponseParser;
+import org.xutils.http.app.StreamResponseParser;
 import org.xutils.http.request.UriRequest;
 
 import java.io.InputStream;
@@ -25,6 +27,7 @@ import java.util.List;
 
     private String charset = "UTF-8";
     private String resultStr = null;
+    private TeeInputStream cacheStream = null;
 
     private final Type objectType;
     private final Class<?> objectClass;
@@ -98,6 +101,16 @@ import java.util.List;
 
     @Override
     public Object load(final InputStream in) throws Throwable {
+        resultStr = null;
+        cacheStream = null;
+        if (parser instanceof StreamResponseParser) {
+            // 边下载边转换, 需要缓存时同时保留一份原始数据
+            InputStream source = in;
+            if (cacheEnabled) {
+                source = cacheStream = new TeeInputStream(in);
+            }
+            return ((StreamResponseParser) parser).parse(objectType, objectClass, source, charset);
+        }
         resultStr = IOUtil.readStr(in, charset);
         return parser.parse(objectType, objectClass, resultStr);
     }
@@ -123,6 +136,19 @@ import java.util.List;
 
     @Override
     public void save2Cache(UriRequest request) {
-        saveStringCache(request, resultStr);
+        saveStringCache(request, getCacheText());
+    }
+
+    @Override
+    public String getCacheText() {
+        if (resultStr == null && cacheStream != null) {
+            try {
+                resultStr = cacheStream.toString(charset);
+            } catch (Throwable ex) {
+                LogUtil.e(ex.getMessage(), ex);
+            }
+            cacheStream = null;
+        }
+        return resultStr;
     }
 }
\ No newline at end of file
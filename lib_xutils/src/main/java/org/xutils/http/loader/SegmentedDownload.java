@@ -0,0 +1,383 @@
+package org.xutils.http.loader;
+
+import android.text.TextUtils;
+
+import org.xutils.common.Callback;
+import org.xutils.common.util.IOUtil;
+import org.xutils.common.util.LogUtil;
+import org.xutils.http.ProgressHandler;
+import org.xutils.http.RequestParams;
+import org.xutils.http.request.UriRequest;
+import org.xutils.http.request.UriRequestFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分段并行下载.
+ * 目标文件预先分配为完整大小, 每段使用一个 Range 请求并行写入各自的位置,
+ * 每段的下载进度记录在 targetFile + ".seg" 中, 中断后按段继续下载.
+ * 记录文件格式: 第一行为文件总长度, 之后每行为一段的 "start end downloaded"(end包含在内).
+ */
+/*package*/ final class SegmentedDownload {
+
+    private static final String RECORD_SUFFIX = ".seg";
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024; // 每段最小1M
+    private static final long SAVE_RECORD_INTERVAL = 1000; // 记录文件保存间隔(ms)
+    private static final int MAX_SEGMENT_THREADS = 4; // 所有分段下载共用的读取线程数
+    private static final int KEEP_ALIVE = 10; // 读取线程空闲超时(s)
+
+    private static final ThreadPoolExecutor SEGMENT_EXECUTOR;
+
+    static {
+        SEGMENT_EXECUTOR = new ThreadPoolExecutor(
+                MAX_SEGMENT_THREADS, MAX_SEGMENT_THREADS,
+                KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "xUtils-download-segment#" + mCount.getAndIncrement());
+                    }
+                });
+        SEGMENT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final File targetFile;
+    private final File recordFile;
+    private final long total;
+    private final Segment[] segments;
+
+    private final AtomicLong current = new AtomicLong(0);
+    private volatile boolean stopped = false;
+    private volatile Throwable error;
+    private long lastSaveTime;
+
+    private SegmentedDownload(File targetFile, long total, Segment[] segments) {
+        this.targetFile = targetFile;
+        this.recordFile = getRecordFile(targetFile);
+        this.total = total;
+        this.segments = segments;
+        for (Segment segment : segments) {
+            current.addAndGet(segment.done);
+        }
+    }
+
+    public static File getRecordFile(File targetFile) {
+        return new File(targetFile.getAbsolutePath() + RECORD_SUFFIX);
+    }
+
+    /**
+     * 读取未完成的分段下载记录, 不存在或无效时返回null.
+     */
+    public static SegmentedDownload load(File targetFile) {
+        File recordFile = getRecordFile(targetFile);
+        if (!recordFile.exists()) return null;
+
+        SegmentedDownload result = null;
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(recordFile);
+            String[] lines = IOUtil.readStr(in).split("\n");
+            long total = Long.parseLong(lines[0].trim());
+            Segment[] segments = new Segment[lines.length - 1];
+            for (int i = 1; i < lines.length; i++) {
+                String[] values = lines[i].trim().split(" ");
+                segments[i - 1] = new Segment(
+                        Long.parseLong(values[0]),
+                        Long.parseLong(values[1]),
+                        Long.parseLong(values[2]));
+            }
+            if (segments.length > 0 && targetFile.length() == total) {
+                result = new SegmentedDownload(targetFile, total, segments);
+            }
+        } catch (Throwable ex) {
+            LogUtil.w("read segment record error", ex);
+        } finally {
+            IOUtil.closeQuietly(in);
+        }
+
+        if (result == null) {
+            IOUtil.deleteFileOrDir(recordFile);
+        }
+        return result;
+    }
+
+    /**
+     * 新建分段下载, 文件太小不需要分段时返回null.
+     */
+    public static SegmentedDownload create(File targetFile, long total, int segmentCount) {
+        int count = (int) Math.min(segmentCount, total / MIN_SEGMENT_SIZE);
+        if (count <= 1) return null;
+
+        long segmentSize = total / count;
+        Segment[] segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long end = i == count - 1 ? total - 1 : start + segmentSize - 1;
+            segments[i] = new Segment(start, end, 0);
+        }
+        return new SegmentedDownload(targetFile, total, segments);
+    }
+
+    public static void deleteRecord(File targetFile) {
+        IOUtil.deleteFileOrDir(getRecordFile(targetFile));
+    }
+
+    /**
+     * 主请求(第一个未完成的段)的 Range 头
+     */
+    public String getMainRange() {
+        return getRange(getMainSegment());
+    }
+
+    /**
+     * 检查继续下载时主请求的响应, 服务器上的文件长度变化时返回false.
+     */
+    public boolean checkResponse(UriRequest request) throws IOException {
+        if (request.getResponseCode() != 206) return false;
+        String contentRange = request.getResponseHeader("Content-Range");
+        if (TextUtils.isEmpty(contentRange)) return false;
+        int index = contentRange.lastIndexOf('/');
+        try {
+            return index > 0 && Long.parseLong(contentRange.substring(index + 1).trim()) == total;
+        } catch (NumberFormatException ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * 开始下载, mainRequest已经发送了 {@link #getMainRange()} 的请求.
+     */
+    public void download(UriRequest mainRequest, final RequestParams params, final ProgressHandler progressHandler) throws Throwable {
+        RandomAccessFile file = new RandomAccessFile(targetFile, "rw");
+        try {
+            if (file.length() != total) {
+                file.setLength(total);
+            }
+        } finally {
+            IOUtil.closeQuietly(file);
+        }
+        saveRecord();
+
+        if (progressHandler != null && !progressHandler.updateProgress(total, current.get(), true)) {
+            throw new Callback.CancelledException("download stopped!");
+        }
+
+        Segment mainSegment = getMainSegment();
+        final String mainRange = getRange(mainSegment);
+        final List<UriRequest> requestList = new ArrayList<UriRequest>(segments.length);
+        List<Segment> segmentList = new ArrayList<Segment>(segments.length);
+        for (Segment segment : segments) {
+            if (segment != mainSegment && !segment.isFinished()) {
+                segmentList.add(segment);
+            }
+        }
+        try {
+            // 其他段在读取线程中发出请求并读取数据, 避免排队等待线程时连接已建立却没有读取而超时.
+            final CountDownLatch latch = new CountDownLatch(segmentList.size());
+            for (final Segment segment : segmentList) {
+                SEGMENT_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            downloadSegmentQuietly(params, mainRange, segment, requestList, progressHandler);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                });
+            }
+
+            readSegmentQuietly(mainRequest, mainSegment, progressHandler);
+            if (stopped) {
+                // 关闭请求使阻塞在读取中的任务尽快结束
+                closeRequests(requestList);
+            }
+            latch.await();
+        } catch (Throwable ex) {
+            if (error == null) {
+                error = ex;
+            }
+            stopped = true;
+        } finally {
+            closeRequests(requestList);
+        }
+
+        if (error != null) {
+            saveRecord();
+            throw error;
+        }
+
+        if (progressHandler != null) {
+            progressHandler.updateProgress(total, current.get(), true);
+        }
+        IOUtil.deleteFileOrDir(recordFile);
+    }
+
+    /**
+     * 发出一段的请求并读取数据.
+     * 各段共享params, 设置RANGE头和发送请求在params的锁内进行, 发送后恢复为主请求的RANGE头.
+     */
+    private void downloadSegmentQuietly(RequestParams params, String mainRange, Segment segment,
+                                        List<UriRequest> requestList, ProgressHandler progressHandler) {
+        if (stopped) return;
+        UriRequest request = null;
+        try {
+            synchronized (params) {
+                try {
+                    params.setHeader("RANGE", getRange(segment));
+                    request = UriRequestFactory.getUriRequest(params, File.class);
+                    synchronized (requestList) {
+                        requestList.add(request);
+                    }
+                    if (stopped) return;
+                    request.sendRequest();
+                } finally {
+                    params.setHeader("RANGE", mainRange);
+                }
+            }
+            if (request.getResponseCode() != 206) {
+                throw new IOException("range not satisfied: " + request.getResponseCode());
+            }
+            readSegment(request.getInputStream(), segment, progressHandler);
+        } catch (Throwable ex) {
+            if (error == null) {
+                error = ex;
+            }
+            stopped = true;
+        } finally {
+            IOUtil.closeQuietly(request);
+        }
+    }
+
+    private static void closeRequests(List<UriRequest> requestList) {
+        synchronized (requestList) {
+            for (UriRequest request : requestList) {
+                IOUtil.closeQuietly(request);
+            }
+        }
+    }
+
+    private void readSegmentQuietly(UriRequest request, Segment segment, ProgressHandler progressHandler) {
+        try {
+            readSegment(request.getInputStream(), segment, progressHandler);
+        } catch (Throwable ex) {
+            if (error == null) {
+                error = ex;
+            }
+            stopped = true;
+        }
+    }
+
+    private void readSegment(InputStream in, Segment segment, ProgressHandler progressHandler) throws Throwable {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(targetFile, "rw");
+            file.seek(segment.start + segment.done);
+
+            byte[] tmp = new byte[8192];
+            long remaining = segment.getRemaining();
+            while (remaining > 0 && !stopped) {
+                int len = in.read(tmp, 0, (int) Math.min(tmp.length, remaining));
+                if (len == -1) {
+                    throw new IOException("unexpected end of segment: " + segment);
+                }
+                file.write(tmp, 0, len);
+                segment.done += len;
+                remaining -= len;
+                current.addAndGet(len);
+                onProgress(progressHandler);
+            }
+        } finally {
+            IOUtil.closeQuietly(file);
+        }
+    }
+
+    private synchronized void onProgress(ProgressHandler progressHandler) throws IOException {
+        if (stopped) return;
+        if (progressHandler != null && !progressHandler.updateProgress(total, current.get(), false)) {
+            throw new Callback.CancelledException("download stopped!");
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSaveTime >= SAVE_RECORD_INTERVAL) {
+            lastSaveTime = now;
+            saveRecord();
+        }
+    }
+
+    private synchronized void saveRecord() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append(total).append('\n');
+        for (Segment segment : segments) {
+            builder.append(segment.start).append(' ')
+                    .append(segment.end).append(' ')
+                    .append(segment.done).append('\n');
+        }
+        File tempFile = new File(recordFile.getAbsolutePath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tempFile);
+            IOUtil.writeStr(out, builder.toString());
+        } finally {
+            IOUtil.closeQuietly(out);
+        }
+        if (!tempFile.renameTo(recordFile)) {
+            IOUtil.deleteFileOrDir(recordFile);
+            tempFile.renameTo(recordFile);
+        }
+    }
+
+    private Segment getMainSegment() {
+        for (Segment segment : segments) {
+            if (!segment.isFinished()) {
+                return segment;
+            }
+        }
+        return segments[segments.length - 1];
+    }
+
+    private static String getRange(Segment segment) {
+        return "bytes=" + (segment.start + segment.done) + "-" + segment.end;
+    }
+
+    private static final class Segment {
+        final long start;
+        final long end;
+        volatile long done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        long getRemaining() {
+            return end - start + 1 - done;
+        }
+
+        boolean isFinished() {
+            return getRemaining() <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end + "(" + done + ")";
+        }
+    }
+}
@@ -58,4 +58,9 @@ import java.io.InputStream;
     public void save2Cache(UriRequest request) {
         saveStringCache(request, resultStr);
     }
+
+    @Override
+    public String getCacheText() {
+        return resultStr;
+    }
 }
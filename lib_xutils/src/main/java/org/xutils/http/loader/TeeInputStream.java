@@ -0,0 +1,58 @@
+package org.xutils.http.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 读取数据的同时保留一份副本, 流式转换结束后用于写入缓存.
+ */
+/*package*/ final class TeeInputStream extends FilterInputStream {
+
+    private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    public TeeInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            copy.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int len = super.read(buffer, offset, count);
+        if (len > 0) {
+            copy.write(buffer, offset, len);
+        }
+        return len;
+    }
+
+    @Override
+    public long skip(long byteCount) throws IOException {
+        // 跳过的数据也需要进入副本
+        byte[] buffer = new byte[(int) Math.min(byteCount, 1024)];
+        long skipped = 0;
+        while (skipped < byteCount) {
+            int len = read(buffer, 0, (int) Math.min(byteCount - skipped, buffer.length));
+            if (len < 0) break;
+            skipped += len;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    public String toString(String charset) throws IOException {
+        return copy.toString(charset).trim();
+    }
+}
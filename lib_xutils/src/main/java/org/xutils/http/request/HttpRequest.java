@@ -5,7 +5,6 @@ import android.net.Uri;
 import android.os.Build;
 import android.text.TextUtils;
 
-import org.xutils.cache.DiskCacheEntity;
 import org.xutils.cache.LruDiskCache;
 import org.xutils.common.util.IOUtil;
 import org.xutils.common.util.KeyValue;
@@ -13,9 +12,13 @@ import org.xutils.common.util.LogUtil;
 import org.xutils.ex.HttpException;
 import org.xutils.http.HttpMethod;
 import org.xutils.http.RequestParams;
+import org.xutils.http.body.GzipBody;
 import org.xutils.http.body.ProgressBody;
 import org.xutils.http.body.RequestBody;
+import org.xutils.http.body.StringBody;
+import org.xutils.http.body.UrlEncodedParamsBody;
 import org.xutils.http.cookie.DbCookieStore;
+import org.xutils.http.loader.FileLoader;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -35,6 +38,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
@@ -50,6 +54,8 @@ public class HttpRequest extends UriRequest {
     private InputStream inputStream = null;
     private HttpURLConnection connection = null;
     private int responseCode = 0;
+    private boolean decodeContent = false;
+    private boolean acceptGzipAdded = false; // Accept-Encoding由xUtils添加, 只在此时解压返回数据
 
     // cookie manager
     private static final CookieManager COOKIE_MANAGER =
@@ -171,12 +177,28 @@ public class HttpRequest extends UriRequest {
             }
         }
 
+        // 请求gzip压缩的返回数据, 由getInputStream解压.
+        // 手动设置Accept-Encoding后HttpURLConnection不再自动解压.
+        // 调用者自己设置了Accept-Encoding时保持原来的行为, 返回未解压的数据.
+        acceptGzipAdded = false;
+        if (params.isAcceptGzip() && !(loader instanceof FileLoader)
+                && connection.getRequestProperty("Accept-Encoding") == null
+                && connection.getRequestProperty("Range") == null) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            acceptGzipAdded = true;
+        }
+
         { // write body
             HttpMethod method = params.getMethod();
             connection.setRequestMethod(method.toString());
             if (HttpMethod.permitsRequestBody(method)) {
                 RequestBody body = params.getRequestBody();
                 if (body != null) {
+                    if (params.isGzipRequestBody()
+                            && (body instanceof StringBody || body instanceof UrlEncodedParamsBody)) {
+                        body = new GzipBody(body);
+                        connection.setRequestProperty("Content-Encoding", "gzip");
+                    }
                     if (body instanceof ProgressBody) {
                         ((ProgressBody) body).setProgressHandler(progressHandler);
                     }
@@ -196,7 +218,9 @@ public class HttpRequest extends UriRequest {
                             connection.setChunkedStreamingMode(256 * 1024);
                         }
                     }
-                    connection.setRequestProperty("Content-Length", String.valueOf(contentLength));
+                    if (contentLength >= 0) {
+                        connection.setRequestProperty("Content-Length", String.valueOf(contentLength));
+                    }
                     connection.setDoOutput(true);
                     body.writeTo(connection.getOutputStream());
                 }
@@ -262,7 +286,7 @@ public class HttpRequest extends UriRequest {
     @Override
     public Object loadResultFromCache() throws Throwable {
         isLoading = true;
-        DiskCacheEntity cacheEntity = LruDiskCache.getDiskCache(params.getCacheDirName())
+        cacheEntity = LruDiskCache.getDiskCache(params.getCacheDirName())
                 .setMaxSize(params.getCacheSize())
                 .get(this.getCacheKey());
 
@@ -292,8 +316,16 @@ public class HttpRequest extends UriRequest {
     @Override
     public InputStream getInputStream() throws IOException {
         if (connection != null && inputStream == null) {
-            inputStream = connection.getResponseCode() >= 400 ?
+            int code = connection.getResponseCode();
+            inputStream = code >= 400 ?
                     connection.getErrorStream() : connection.getInputStream();
+            if (acceptGzipAdded && inputStream != null && code != 204 && code != 304
+                    && params.getMethod() != HttpMethod.HEAD
+                    && connection.getContentLength() != 0
+                    && "gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                decodeContent = true;
+                inputStream = new GZIPInputStream(inputStream, 8192);
+            }
         }
         return inputStream;
     }
@@ -314,6 +346,9 @@ public class HttpRequest extends UriRequest {
     public long getContentLength() {
         long result = 0;
         if (connection != null) {
+            if (decodeContent) {
+                return -1; // 解压后的长度未知
+            }
             try {
                 result = connection.getContentLength();
             } catch (Throwable ex) {
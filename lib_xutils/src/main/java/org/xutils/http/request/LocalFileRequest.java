@@ -1,5 +1,7 @@
 package org.xutils.http.request;
 
+import android.text.TextUtils;
+
 import org.xutils.common.util.IOUtil;
 import org.xutils.http.RequestParams;
 import org.xutils.http.loader.FileLoader;
@@ -42,7 +44,11 @@ public class LocalFileRequest extends UriRequest {
     @Override
     public Object loadResult() throws Throwable {
         if (loader instanceof FileLoader) {
-            return getFile();
+            String saveFilePath = params.getSaveFilePath();
+            if (TextUtils.isEmpty(saveFilePath) || getFile().equals(new File(saveFilePath))) {
+                return getFile();
+            }
+            // 复制到saveFilePath, FileLoader对本地文件使用FileChannel复制.
         }
         return this.loader.load(this);
     }
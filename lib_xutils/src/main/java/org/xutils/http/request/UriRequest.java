@@ -1,5 +1,8 @@
 package org.xutils.http.request;
 
+import android.text.TextUtils;
+
+import org.xutils.cache.DiskCacheEntity;
 import org.xutils.common.util.LogUtil;
 import org.xutils.http.ProgressHandler;
 import org.xutils.http.RequestParams;
@@ -26,6 +29,7 @@ public abstract class UriRequest implements Closeable {
 
     protected ClassLoader callingClassLoader = null;
     protected ProgressHandler progressHandler = null;
+    protected DiskCacheEntity cacheEntity = null; // loadResultFromCache读取的缓存
 
     /*package*/ UriRequest(RequestParams params, Type loadType) throws Throwable {
         this.params = params;
@@ -43,6 +47,10 @@ public abstract class UriRequest implements Closeable {
         this.loader.setProgressHandler(progressHandler);
     }
 
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.loader.setCacheEnabled(cacheEnabled);
+    }
+
     public void setCallingClassLoader(ClassLoader callingClassLoader) {
         this.callingClassLoader = callingClassLoader;
     }
@@ -86,6 +94,41 @@ public abstract class UriRequest implements Closeable {
 
     public abstract void clearCacheHeader();
 
+    public DiskCacheEntity getCacheEntity() {
+        return cacheEntity;
+    }
+
+    /**
+     * 使用其他请求读取的缓存(如对冲请求), 用于 {@link #isResultSameAsCache()}
+     */
+    public void setCacheEntity(DiskCacheEntity cacheEntity) {
+        this.cacheEntity = cacheEntity;
+    }
+
+    /**
+     * 验证缓存后返回的内容是否与缓存相同, 需要在 {@link #save2Cache()} 之前调用.
+     * 依次比较缓存的文本, ETag, Last-Modified, 无法判断时返回false.
+     */
+    public boolean isResultSameAsCache() {
+        if (cacheEntity == null) return false;
+
+        String cacheText = cacheEntity.getTextContent();
+        String resultText = loader.getCacheText();
+        if (cacheText != null && resultText != null) {
+            return cacheText.equals(resultText);
+        }
+
+        String cacheETag = cacheEntity.getEtag();
+        String eTag = getETag();
+        if (!TextUtils.isEmpty(cacheETag) && !TextUtils.isEmpty(eTag)) {
+            return cacheETag.equals(eTag);
+        }
+
+        long cacheLastModified = cacheEntity.getLastModify() == null ? 0 : cacheEntity.getLastModify().getTime();
+        long lastModified = getHeaderFieldDate("Last-Modified", 0);
+        return cacheLastModified > 0 && lastModified > 0 && cacheLastModified == lastModified;
+    }
+
     public void save2Cache() {
         x.task().run(new Runnable() {
             @Override
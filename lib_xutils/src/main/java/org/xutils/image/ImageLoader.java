@@ -61,7 +61,7 @@ import java.util.concurrent.atomic.AtomicLong;
     private final static Executor EXECUTOR = new PriorityExecutor(10, false);
     private final static int MEM_CACHE_MIN_SIZE = 1024 * 1024 * 4; // 4M
     private final static LruCache<MemCacheKey, Drawable> MEM_CACHE =
-            new LruCache<MemCacheKey, Drawable>(MEM_CACHE_MIN_SIZE) {
+            new LruCache<MemCacheKey, Drawable>(MEM_CACHE_MIN_SIZE, LruCache.Policy.TINY_LFU) {
                 private boolean deepClear = false;
 
                 @Override
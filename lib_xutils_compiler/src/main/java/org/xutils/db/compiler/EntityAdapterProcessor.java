@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2013. wyouflf (wyouflf@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xutils.db.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为 @Table 实体类生成 org.xutils.db.table.EntityAdapter 的实现,
+ * 读写列值时直接访问字段或 get/set 方法, 不再使用反射.
+ * <p/>
+ * 无法生成的实体类(如字段不可访问, 使用了自定义 ColumnConverter 的列类型)会被跳过,
+ * 运行时仍使用反射.
+ */
+@SupportedAnnotationTypes(EntityAdapterProcessor.TABLE)
+public class EntityAdapterProcessor extends AbstractProcessor {
+
+    /*package*/ static final String TABLE = "org.xutils.db.annotation.Table";
+    private static final String COLUMN = "org.xutils.db.annotation.Column";
+    private static final String ENTITY_ADAPTER = "org.xutils.db.table.EntityAdapter";
+    private static final String ENTITY_ADAPTER_SUFFIX = "$$EntityAdapter";
+
+    /**
+     * key: 字段类型
+     */
+    private static final HashMap<String, ColumnType> COLUMN_TYPE_MAP = new HashMap<String, ColumnType>();
+
+    static {
+        ColumnType intType = new ColumnType("cursor.getInt(%s)", "bindLong", "%s");
+        COLUMN_TYPE_MAP.put("int", intType);
+        COLUMN_TYPE_MAP.put("java.lang.Integer", intType);
+
+        ColumnType longType = new ColumnType("cursor.getLong(%s)", "bindLong", "%s");
+        COLUMN_TYPE_MAP.put("long", longType);
+        COLUMN_TYPE_MAP.put("java.lang.Long", longType);
+
+        ColumnType shortType = new ColumnType("cursor.getShort(%s)", "bindLong", "%s");
+        COLUMN_TYPE_MAP.put("short", shortType);
+        COLUMN_TYPE_MAP.put("java.lang.Short", shortType);
+
+        ColumnType byteType = new ColumnType("(byte) cursor.getInt(%s)", "bindLong", "%s");
+        COLUMN_TYPE_MAP.put("byte", byteType);
+        COLUMN_TYPE_MAP.put("java.lang.Byte", byteType);
+
+        ColumnType charType = new ColumnType("(char) cursor.getInt(%s)", "bindLong", "%s");
+        COLUMN_TYPE_MAP.put("char", charType);
+        COLUMN_TYPE_MAP.put("java.lang.Character", charType);
+
+        ColumnType booleanType = new ColumnType("cursor.getInt(%s) == 1", "bindLong", "%s ? 1 : 0");
+        COLUMN_TYPE_MAP.put("boolean", booleanType);
+        COLUMN_TYPE_MAP.put("java.lang.Boolean", booleanType);
+
+        ColumnType floatType = new ColumnType("cursor.getFloat(%s)", "bindDouble", "%s");
+        COLUMN_TYPE_MAP.put("float", floatType);
+        COLUMN_TYPE_MAP.put("java.lang.Float", floatType);
+
+        ColumnType doubleType = new ColumnType("cursor.getDouble(%s)", "bindDouble", "%s");
+        COLUMN_TYPE_MAP.put("double", doubleType);
+        COLUMN_TYPE_MAP.put("java.lang.Double", doubleType);
+
+        COLUMN_TYPE_MAP.put("java.lang.String", new ColumnType("cursor.getString(%s)", "bindString", "%s"));
+        COLUMN_TYPE_MAP.put("byte[]", new ColumnType("cursor.getBlob(%s)", "bindBlob", "%s"));
+        COLUMN_TYPE_MAP.put("java.util.Date", new ColumnType("new java.util.Date(cursor.getLong(%s))", "bindLong", "%s.getTime()"));
+        COLUMN_TYPE_MAP.put("java.sql.Date", new ColumnType("new java.sql.Date(cursor.getLong(%s))", "bindLong", "%s.getTime()"));
+    }
+
+    private static final HashSet<String> AUTO_ID_TYPES = new HashSet<String>();
+    private static final HashSet<String> BOOLEAN_TYPES = new HashSet<String>();
+
+    static {
+        AUTO_ID_TYPES.add("int");
+        AUTO_ID_TYPES.add("java.lang.Integer");
+        AUTO_ID_TYPES.add("long");
+        AUTO_ID_TYPES.add("java.lang.Long");
+
+        BOOLEAN_TYPES.add("boolean");
+        BOOLEAN_TYPES.add("java.lang.Boolean");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) continue;
+                TypeElement entityType = (TypeElement) element;
+                try {
+                    EntityInfo entityInfo = parseEntity(entityType);
+                    if (entityInfo != null) {
+                        writeAdapter(entityInfo);
+                    }
+                } catch (IOException ex) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "can not write EntityAdapter: " + ex.getMessage(), entityType);
+                }
+            }
+        }
+        return false;
+    }
+
+    //*********************************************** parse ***********************************************
+
+    private EntityInfo parseEntity(TypeElement entityType) {
+        Set<Modifier> modifiers = entityType.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)
+                || !entityType.getTypeParameters().isEmpty()) {
+            return skip(entityType, "abstract, private or generic class");
+        }
+        if (entityType.getNestingKind() != NestingKind.TOP_LEVEL
+                && (entityType.getNestingKind() != NestingKind.MEMBER || !modifiers.contains(Modifier.STATIC))) {
+            return skip(entityType, "not a top level or static member class");
+        }
+        if (!hasPublicDefaultConstructor(entityType)) {
+            return skip(entityType, "no public default constructor");
+        }
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(entityType);
+        String packageName = pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(entityType).toString();
+
+        EntityInfo entityInfo = new EntityInfo();
+        entityInfo.packageName = packageName;
+        entityInfo.entityClassName = entityType.getQualifiedName().toString();
+        entityInfo.adapterSimpleName = (packageName.length() > 0 ?
+                binaryName.substring(packageName.length() + 1) : binaryName) + ENTITY_ADAPTER_SUFFIX;
+
+        HashSet<String> columnNames = new HashSet<String>();
+        TypeElement type = entityType;
+        while (type != null && !"java.lang.Object".equals(type.getQualifiedName().toString())) {
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.FIELD) continue;
+                Set<Modifier> fieldModifiers = member.getModifiers();
+                if (fieldModifiers.contains(Modifier.STATIC) || fieldModifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                AnnotationMirror columnAnn = findAnnotation(member, COLUMN);
+                if (columnAnn == null) continue;
+
+                VariableElement field = (VariableElement) member;
+                Map<String, Object> values = getAnnotationValues(columnAnn);
+                String columnName = (String) values.get("name");
+                if (columnNames.contains(columnName)) continue;
+
+                String fieldType = typeName(field.asType());
+                ColumnType columnType = COLUMN_TYPE_MAP.get(fieldType);
+                if (columnType == null) {
+                    return skip(entityType, "unsupported column type: " + fieldType);
+                }
+
+                ColumnInfo column = new ColumnInfo();
+                column.name = columnName;
+                column.fieldType = fieldType;
+                column.columnType = columnType;
+                column.primitive = field.asType().getKind().isPrimitive();
+                column.isId = (Boolean) values.get("isId");
+                column.isAutoId = column.isId && (Boolean) values.get("autoGen") && AUTO_ID_TYPES.contains(fieldType);
+                if (!findAccessors(packageName, type, field, column)) {
+                    return skip(entityType, "can not access field: " + field.getSimpleName());
+                }
+
+                columnNames.add(columnName);
+                entityInfo.columns.add(column);
+            }
+            type = superType(type);
+        }
+
+        if (entityInfo.columns.isEmpty()) {
+            return skip(entityType, "no column");
+        }
+        return entityInfo;
+    }
+
+    /**
+     * 与 ColumnUtils#findGetMethod 和 ColumnUtils#findSetMethod 的查找规则一致,
+     * 优先使用 get/set 方法, 不存在时直接访问字段.
+     */
+    private boolean findAccessors(String packageName, TypeElement declaringType, VariableElement field, ColumnInfo column) {
+        String fieldName = field.getSimpleName().toString();
+        String upperName = fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+        boolean isBoolean = BOOLEAN_TYPES.contains(column.fieldType);
+
+        ExecutableElement getMethod = null;
+        if (isBoolean) {
+            getMethod = findMethod(packageName, declaringType, fieldName.startsWith("is") ? fieldName : "is" + upperName, null);
+        }
+        if (getMethod == null) {
+            getMethod = findMethod(packageName, declaringType, "get" + upperName, null);
+        }
+
+        ExecutableElement setMethod = null;
+        if (isBoolean && fieldName.startsWith("is") && fieldName.length() > 2) {
+            setMethod = findMethod(packageName, declaringType,
+                    "set" + fieldName.substring(2, 3).toUpperCase() + fieldName.substring(3), field.asType());
+        }
+        if (setMethod == null) {
+            setMethod = findMethod(packageName, declaringType, "set" + upperName, field.asType());
+        }
+
+        boolean fieldAccessible = isAccessible(packageName, declaringType, field);
+        if (getMethod != null) {
+            column.getter = "entity." + getMethod.getSimpleName() + "()";
+        } else if (fieldAccessible) {
+            column.getter = "entity." + fieldName;
+        } else {
+            return false;
+        }
+        if (setMethod != null) {
+            column.setter = "entity." + setMethod.getSimpleName() + "(%s);";
+        } else if (fieldAccessible && !field.getModifiers().contains(Modifier.FINAL)) {
+            column.setter = "entity." + fieldName + " = %s;";
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private ExecutableElement findMethod(String packageName, TypeElement type, String methodName, TypeMirror paramType) {
+        while (type != null && !"java.lang.Object".equals(type.getQualifiedName().toString())) {
+            for (Element member : type.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.METHOD) continue;
+                if (!member.getSimpleName().contentEquals(methodName)) continue;
+                ExecutableElement method = (ExecutableElement) member;
+                if (method.getModifiers().contains(Modifier.STATIC)) continue;
+                List<? extends VariableElement> params = method.getParameters();
+                if (paramType == null) {
+                    if (!params.isEmpty()) continue;
+                } else {
+                    if (params.size() != 1
+                            || !processingEnv.getTypeUtils().isSameType(params.get(0).asType(), paramType)) {
+                        continue;
+                    }
+                }
+                return isAccessible(packageName, type, method) ? method : null;
+            }
+            type = superType(type);
+        }
+        return null;
+    }
+
+    private boolean isAccessible(String packageName, TypeElement declaringType, Element member) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) return false;
+        if (modifiers.contains(Modifier.PUBLIC)) return true;
+        String declaringPackage = processingEnv.getElementUtils().getPackageOf(declaringType).getQualifiedName().toString();
+        return declaringPackage.equals(packageName);
+    }
+
+    private boolean hasPublicDefaultConstructor(TypeElement type) {
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && member.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TypeElement superType(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationType.equals(mirror.getAnnotationType().toString())) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Object> getAnnotationValues(AnnotationMirror mirror) {
+        Map<String, Object> result = new HashMap<String, Object>();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                processingEnv.getElementUtils().getElementValuesWithDefaults(mirror);
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            result.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        return result;
+    }
+
+    private String typeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    private EntityInfo skip(TypeElement entityType, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "skip EntityAdapter for " + entityType.getQualifiedName() + ": " + reason);
+        return null;
+    }
+
+    //*********************************************** write ***********************************************
+
+    private void writeAdapter(EntityInfo entityInfo) throws IOException {
+        String adapterName = entityInfo.packageName.length() > 0 ?
+                entityInfo.packageName + "." + entityInfo.adapterSimpleName : entityInfo.adapterSimpleName;
+        String entity = entityInfo.entityClassName;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("// Generated code from xUtils EntityAdapterProcessor. Do not modify!\n");
+        if (entityInfo.packageName.length() > 0) {
+            builder.append("package ").append(entityInfo.packageName).append(";\n\n");
+        }
+        builder.append("public final class ").append(entityInfo.adapterSimpleName)
+                .append(" implements ").append(ENTITY_ADAPTER).append('<').append(entity).append("> {\n\n");
+
+        // column names
+        builder.append("    private static final String[] COLUMN_NAMES = {");
+        for (int i = 0; i < entityInfo.columns.size(); i++) {
+            if (i > 0) builder.append(", ");
+            builder.append('"').append(escape(entityInfo.columns.get(i).name)).append('"');
+        }
+        builder.append("};\n\n");
+
+        builder.append("    @Override\n");
+        builder.append("    public String[] getColumnNames() {\n");
+        builder.append("        return COLUMN_NAMES;\n");
+        builder.append("    }\n\n");
+
+        // create
+        builder.append("    @Override\n");
+        builder.append("    public ").append(entity).append(" createEntity() {\n");
+        builder.append("        return new ").append(entity).append("();\n");
+        builder.append("    }\n\n");
+
+        // bind
+        builder.append("    @Override\n");
+        builder.append("    public void bindStatement(android.database.sqlite.SQLiteStatement statement, ")
+                .append(entity).append(" entity) {\n");
+        int bindIndex = 0;
+        for (ColumnInfo column : entityInfo.columns) {
+            if (column.isAutoId) continue;
+            bindIndex++;
+            if (column.primitive) {
+                builder.append("        statement.").append(column.columnType.bindMethod).append('(').append(bindIndex)
+                        .append(", ").append(String.format(column.columnType.bindValue, column.getter)).append(");\n");
+            } else {
+                String var = "value" + bindIndex;
+                builder.append("        ").append(column.fieldType).append(' ').append(var)
+                        .append(" = ").append(column.getter).append(";\n");
+                builder.append("        if (").append(var).append(" == null) {\n");
+                builder.append("            statement.bindNull(").append(bindIndex).append(");\n");
+                builder.append("        } else {\n");
+                builder.append("            statement.").append(column.columnType.bindMethod).append('(').append(bindIndex)
+                        .append(", ").append(String.format(column.columnType.bindValue, var)).append(");\n");
+                builder.append("        }\n");
+            }
+        }
+        builder.append("    }\n\n");
+
+        // read
+        builder.append("    @Override\n");
+        builder.append("    public void readCursor(").append(entity)
+                .append(" entity, android.database.Cursor cursor, int[] columnIndexes) {\n");
+        builder.append("        int index;\n");
+        for (int i = 0; i < entityInfo.columns.size(); i++) {
+            ColumnInfo column = entityInfo.columns.get(i);
+            builder.append("        index = columnIndexes[").append(i).append("];\n");
+            builder.append("        if (index >= 0 && !cursor.isNull(index)) {\n");
+            builder.append("            ").append(String.format(column.setter,
+                    String.format(column.columnType.readExpr, "index"))).append('\n');
+            builder.append("        }\n");
+        }
+        builder.append("    }\n\n");
+
+        // auto id
+        builder.append("    @Override\n");
+        builder.append("    public void setAutoIdValue(").append(entity).append(" entity, long value) {\n");
+        for (ColumnInfo column : entityInfo.columns) {
+            if (column.isAutoId) {
+                boolean isInt = "int".equals(column.fieldType) || "java.lang.Integer".equals(column.fieldType);
+                builder.append("        ").append(String.format(column.setter, isInt ? "(int) value" : "value")).append('\n');
+            }
+        }
+        builder.append("    }\n");
+        builder.append("}\n");
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(adapterName);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(builder.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String escape(String str) {
+        return str.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static class EntityInfo {
+        String packageName;
+        String entityClassName;
+        String adapterSimpleName;
+        final List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+    }
+
+    private static class ColumnInfo {
+        String name;
+        String fieldType;
+        ColumnType columnType;
+        boolean primitive;
+        boolean isId;
+        boolean isAutoId;
+        String getter; // 读取字段值的表达式
+        String setter; // 写入字段值的语句, %s 为值
+    }
+
+    private static class ColumnType {
+        final String readExpr; // 从cursor读取的表达式, %s 为列位置
+        final String bindMethod;
+        final String bindValue; // 绑定时的值表达式, %s 为字段值
+
+        ColumnType(String readExpr, String bindMethod, String bindValue) {
+            this.readExpr = readExpr;
+            this.bindMethod = bindMethod;
+            this.bindValue = bindValue;
+        }
+    }
+}